@@ -0,0 +1,15 @@
+// A bot that plays the game. It is asked once per tick, before physics runs, whether to flap.
+// All positions are in simulation pixels with y growing downwards.
+public interface Agent {
+    // pipeDistance is from the bird's centre to the left edge of the next unpassed pipe;
+    // gapTop and gapBottom are that pipe's opening
+    boolean shouldJump(double birdY, double velocity, double pipeDistance, double gapTop, double gapBottom);
+
+    // Ask the agent about the simulation's current state
+    static boolean decide(Agent agent, GameSimulation simulation) {
+        Bird bird = simulation.getBird();
+        Pipe pipe = simulation.getNextPipe();
+        return agent.shouldJump(bird.getY(), bird.getVelocity(), pipe.getX() - bird.getX(),
+                pipe.getGapY(), pipe.getGapY() + pipe.getGapHeight());
+    }
+}
@@ -0,0 +1,340 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lookahead bot. Before each tick it searches sequences of jump / no-jump choices over the next
+// horizon ticks on headless copies of the game and jumps when the best sequence starts with a
+// jump. A copy is a GameSimulation snapshot restored into a scratch simulation that each worker
+// keeps, so the search allocates nothing per node.
+//
+// The course never depends on the bird, so a bird that is still alive at a given depth has a
+// future decided by its y and velocity alone; results are memoized per depth on those two,
+// quantized (exact in the standard world, where both are whole numbers). The first few levels of
+// choices are spread over a fork-join pool. A time budget cuts the search short, scoring nodes
+// where it stopped; values cut that way are never memoized, since they are not exact. The budget
+// is checked before every move, so a decision overruns it by about one move's ticks, plus
+// whatever the pool and the collector add.
+//
+// Courses get faster and denser with every level. Reachable courses always have a way through,
+// but past score 50 or so the gaps leave less room than choices STEP ticks apart can find; on
+// RANDOM courses the way through itself usually runs out somewhere past score 40.
+public class Autopilot {
+    static final int DEFAULT_HORIZON = 60; // Ticks searched ahead, about three pipe widths
+    static final int STEP = 3; // Ticks each choice lasts
+    private static final int FORK_LEVELS = 3; // Choices expanded into separate tasks: 8 tasks
+    private static final double Y_QUANTUM = 1.0; // World units
+    private static final double VELOCITY_QUANTUM = 0.5;
+    private static final int MEMO_BITS = 16;
+    private static final int MEMO_PROBES = 8;
+    private static final int CLOSENESS_SCALE = 1024; // Leaf score = ticks survived * this + closeness
+    private static final int SNAPSHOT_BYTES = 4096; // Headless snapshots are a few hundred bytes
+    private static final long OVERRUN_NANOS = 1_000_000; // Past the budget before a decision counts as late
+
+    private final int width;
+    private final int height;
+    private final int levels;
+    private final long budgetNanos;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<Worker> workers;
+
+    private ByteBuffer root = ByteBuffer.allocate(SNAPSHOT_BYTES);
+    private volatile int generation; // Memo entries from earlier decisions are ignored
+    private volatile long deadline;
+
+    // Decision metrics, reset by resetStats()
+    private final LatencyHistogram decisionLatency = new LatencyHistogram();
+    private final LongAdder nodes = new LongAdder();
+    private long searchNanos;
+    private long timeouts;
+    private long overruns;
+
+    // For games in a width x height world; budgetNanos caps every decision
+    public Autopilot(int width, int height, int parallelism, long budgetNanos, int horizonTicks) {
+        this.width = width;
+        this.height = height;
+        this.levels = Math.max(FORK_LEVELS + 1, horizonTicks / STEP);
+        this.budgetNanos = budgetNanos;
+        this.pool = new ForkJoinPool(parallelism);
+        this.workers = ThreadLocal.withInitial(Worker::new);
+    }
+
+    // Whether the bird should jump before live's next tick. Holds live's lock only while taking a
+    // snapshot, so the caller can draw frames or handle input while the search runs.
+    public boolean decide(GameSimulation live) {
+        long start = System.nanoTime();
+        long rootTick;
+        synchronized (live) {
+            if (live.isGameOver()) {
+                return false;
+            }
+            if (root.capacity() < live.getSnapshotSize()) {
+                root = ByteBuffer.allocate(live.getSnapshotSize() * 2);
+            }
+            root.clear();
+            live.save(root);
+            rootTick = live.getTick();
+        }
+        root.flip();
+        generation++;
+        deadline = start + budgetNanos;
+
+        // Task i plays the first FORK_LEVELS choices given by the bits of i, highest bit first
+        int tasks = 1 << FORK_LEVELS;
+        Branch[] branches = new Branch[tasks];
+        for (int i = 0; i < tasks; i++) {
+            branches[i] = new Branch(i, rootTick);
+        }
+        pool.invoke(new Search(branches));
+        int half = tasks / 2;
+        int noJump = 0;
+        int jump = 0;
+        for (int i = 0; i < tasks; i++) {
+            if (i < half) {
+                noJump = Math.max(noJump, branches[i].value);
+            } else {
+                jump = Math.max(jump, branches[i].value);
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        decisionLatency.record(elapsed);
+        searchNanos += elapsed;
+        if (System.nanoTime() > deadline) {
+            timeouts++;
+        }
+        if (elapsed > budgetNanos + OVERRUN_NANOS) {
+            overruns++;
+        }
+        return jump > noJump; // Flapping only when it is strictly better keeps the bird calm
+    }
+
+    private final class Search extends RecursiveTask<Void> {
+        private final Branch[] branches;
+
+        Search(Branch[] branches) {
+            this.branches = branches;
+        }
+
+        @Override
+        protected Void compute() {
+            invokeAll(branches);
+            return null;
+        }
+    }
+
+    // One prefix of choices, searched to the horizon by whichever worker picks it up
+    private final class Branch extends RecursiveTask<Void> {
+        private final int choices;
+        private final long rootTick;
+        int value;
+
+        Branch(int choices, long rootTick) {
+            this.choices = choices;
+            this.rootTick = rootTick;
+        }
+
+        @Override
+        protected Void compute() {
+            Worker worker = workers.get();
+            worker.generation = generation;
+            worker.cut = false;
+            GameSimulation simulation = worker.simulation;
+            simulation.restore(root.duplicate());
+            for (int level = 0; level < FORK_LEVELS && !simulation.isGameOver(); level++) {
+                boolean jump = (choices & (1 << (FORK_LEVELS - 1 - level))) != 0;
+                play(simulation, jump);
+            }
+            value = worker.search(FORK_LEVELS, rootTick);
+            nodes.add(worker.searched);
+            worker.searched = 0;
+            return null;
+        }
+    }
+
+    private static void play(GameSimulation simulation, boolean jump) {
+        if (jump) {
+            simulation.jump();
+        }
+        for (int i = 0; i < STEP && !simulation.isGameOver(); i++) {
+            simulation.tick();
+        }
+    }
+
+    // Scratch state for one pool thread, kept across decisions
+    private final class Worker {
+        final GameSimulation simulation = new GameSimulation(width, height, false, 0);
+        final ByteBuffer[] stack = new ByteBuffer[levels];
+        final long[] memoKeys = new long[1 << MEMO_BITS];
+        final int[] memoValues = new int[1 << MEMO_BITS];
+        final int[] memoGenerations = new int[1 << MEMO_BITS];
+        long searched; // Nodes not yet added to the shared counter
+        int generation; // Of the decision being searched
+        boolean cut; // The deadline has cut this branch short, so later values are not exact
+
+        Worker() {
+            for (int i = 0; i < levels; i++) {
+                stack[i] = ByteBuffer.allocate(SNAPSHOT_BYTES);
+            }
+        }
+
+        // Best score reachable from the simulation's state at this level
+        int search(int level, long rootTick) {
+            searched++;
+            if (simulation.isGameOver() || level == levels) {
+                return score(rootTick);
+            }
+            if (pastDeadline()) {
+                return score(rootTick);
+            }
+            Bird bird = simulation.getBird();
+            long key = memoKey(level, bird.getY(), bird.getVelocity());
+            int slot = find(key);
+            if (slot >= 0) {
+                return memoValues[slot];
+            }
+
+            ByteBuffer saved = stack[level];
+            saved.clear();
+            simulation.save(saved);
+            play(simulation, false);
+            int best = search(level + 1, rootTick);
+            if (pastDeadline()) {
+                return best;
+            }
+            saved.flip();
+            simulation.restore(saved);
+            play(simulation, true);
+            best = Math.max(best, search(level + 1, rootTick));
+
+            if (!cut) {
+                store(key, best);
+            }
+            return best;
+        }
+
+        private boolean pastDeadline() {
+            if (!cut && System.nanoTime() > deadline) {
+                cut = true;
+            }
+            return cut;
+        }
+
+        // Ticks survived since the root, then how close the bird is to the middle of the next gap
+        int score(long rootTick) {
+            int survived = (int) (simulation.getTick() - rootTick);
+            if (simulation.isGameOver()) {
+                return survived * CLOSENESS_SCALE;
+            }
+            Pipe pipe = simulation.getNextPipe();
+            double gapMiddle = pipe.getGapY() + pipe.getGapHeight() / 2;
+            int distance = (int) Math.min(CLOSENESS_SCALE - 1, Math.abs(simulation.getBird().getY() - gapMiddle));
+            return survived * CLOSENESS_SCALE + CLOSENESS_SCALE - 1 - distance;
+        }
+
+        private int find(long key) {
+            int index = hash(key);
+            for (int probe = 0; probe < MEMO_PROBES; probe++) {
+                int slot = (index + probe) & (memoKeys.length - 1);
+                if (memoGenerations[slot] != generation) {
+                    return -1;
+                }
+                if (memoKeys[slot] == key) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        // Takes the first free or stale slot, or evicts the home slot when the run is full
+        private void store(long key, int value) {
+            int index = hash(key);
+            int slot = index;
+            for (int probe = 0; probe < MEMO_PROBES; probe++) {
+                int candidate = (index + probe) & (memoKeys.length - 1);
+                if (memoGenerations[candidate] != generation) {
+                    slot = candidate;
+                    break;
+                }
+            }
+            memoKeys[slot] = key;
+            memoValues[slot] = value;
+            memoGenerations[slot] = generation;
+        }
+    }
+
+    // Level, quantized y and quantized velocity packed into one long
+    private static long memoKey(int level, double y, double velocity) {
+        long qy = Math.round(y / Y_QUANTUM) & 0xFFFFFF;
+        long qv = Math.round(velocity / VELOCITY_QUANTUM) & 0xFFFFFF;
+        return ((long) level << 48) | (qy << 24) | qv;
+    }
+
+    private static int hash(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - MEMO_BITS));
+    }
+
+    // Search nodes per second of decision time, over every worker
+    public double getNodesPerSecond() {
+        return searchNanos == 0 ? 0 : nodes.sum() * 1e9 / searchNanos;
+    }
+
+    public LatencyHistogram getDecisionLatency() {
+        return decisionLatency;
+    }
+
+    // Decisions whose search the time budget cut short
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    // Decisions that took more than OVERRUN_NANOS longer than the budget
+    public long getOverruns() {
+        return overruns;
+    }
+
+    public String summary() {
+        return String.format("autopilot %.2fM nodes/s, decision p50 %.2f p99 %.2f max %.2f ms, %d cut short, %d late",
+                getNodesPerSecond() / 1e6, decisionLatency.getValueAtPercentile(50) / 1e6,
+                decisionLatency.getValueAtPercentile(99) / 1e6, decisionLatency.getMax() / 1e6, timeouts, overruns);
+    }
+
+    public void resetStats() {
+        decisionLatency.reset();
+        nodes.reset();
+        searchNanos = 0;
+        timeouts = 0;
+        overruns = 0;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // Demo and CPU stress run: java Autopilot [threads] [games] [budgetMs] [horizonTicks]
+    public static void main(String[] args) {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        double budgetMillis = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        int horizon = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_HORIZON;
+        long maxTicks = 5_000; // 100 s of play, more than the bot lasts
+        Autopilot autopilot = new Autopilot(GameSimulation.WORLD_WIDTH, GameSimulation.WORLD_HEIGHT, threads,
+                (long) (budgetMillis * 1e6), horizon);
+
+        for (int game = 1; game <= games; game++) {
+            GameSimulation simulation = new GameSimulation(false, game);
+            simulation.setCourseMode(CourseMode.REACHABLE); // As in the window
+            simulation.reset(game);
+            while (!simulation.isGameOver() && simulation.getTick() < maxTicks) {
+                if (autopilot.decide(simulation)) {
+                    simulation.jump();
+                }
+                simulation.tick();
+            }
+            System.out.printf("seed %d: score %d in %d ticks%s%n", game, simulation.getScore(),
+                    simulation.getTick(), simulation.isGameOver() ? "" : " (still alive)");
+        }
+        System.out.println(autopilot.summary());
+        autopilot.shutdown();
+    }
+}
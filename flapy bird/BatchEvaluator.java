@@ -0,0 +1,175 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+// Plays many independent seeded games headlessly across a fork-join pool and aggregates how an
+// agent did. Game i uses seed firstSeed + i, so a batch is reproducible whatever the thread count.
+public class BatchEvaluator {
+    private static final int GAMES_PER_TASK = 16; // Below this a task just plays its games in turn
+
+    private final int width;
+    private final int height;
+    private final long maxTicks; // Stops agents that never die
+    private final ForkJoinPool pool;
+    private HighScoreStore scores; // null unless games are logged
+
+    public BatchEvaluator(int width, int height, long maxTicks, int parallelism) {
+        this.width = width;
+        this.height = height;
+        this.maxTicks = maxTicks;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    // agents supplies a fresh Agent for every game, so agents may keep per-game state
+    public Result evaluate(Supplier<? extends Agent> agents, long firstSeed, int games) {
+        Result result = new Result(games);
+        long start = System.nanoTime();
+        pool.invoke(new Games(agents, firstSeed, result, 0, games));
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    // Queues every finished game in scores from now on
+    public void setScores(HighScoreStore scores) {
+        this.scores = scores;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private class Games extends RecursiveAction {
+        private final Supplier<? extends Agent> agents;
+        private final long firstSeed;
+        private final Result result;
+        private final int from;
+        private final int to;
+
+        Games(Supplier<? extends Agent> agents, long firstSeed, Result result, int from, int to) {
+            this.agents = agents;
+            this.firstSeed = firstSeed;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > GAMES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Games(agents, firstSeed, result, from, middle),
+                        new Games(agents, firstSeed, result, middle, to));
+                return;
+            }
+            // One simulation per task, reset for each game
+            GameSimulation simulation = new GameSimulation(width, height, false, firstSeed + from);
+            for (int i = from; i < to; i++) {
+                simulation.reset(firstSeed + i);
+                Agent agent = agents.get();
+                while (!simulation.isGameOver() && simulation.getTick() < maxTicks) {
+                    if (Agent.decide(agent, simulation)) {
+                        simulation.jump();
+                    }
+                    simulation.tick();
+                }
+                result.scores[i] = simulation.getScore();
+                result.ticks[i] = simulation.getTick();
+                if (scores != null) {
+                    scores.submit(simulation);
+                }
+            }
+        }
+    }
+
+    public static class Result {
+        private final int[] scores;
+        private final long[] ticks;
+        private long elapsedNanos;
+
+        Result(int games) {
+            scores = new int[games];
+            ticks = new long[games];
+        }
+
+        public int getGames() {
+            return scores.length;
+        }
+
+        // Score and survival ticks of game i (seed firstSeed + i)
+        public int getScore(int game) {
+            return scores[game];
+        }
+
+        public long getTicks(int game) {
+            return ticks[game];
+        }
+
+        public long getTotalScore() {
+            long total = 0;
+            for (int score : scores) {
+                total += score;
+            }
+            return total;
+        }
+
+        public int getMaxScore() {
+            int max = 0;
+            for (int score : scores) {
+                max = Math.max(max, score);
+            }
+            return max;
+        }
+
+        public long getTotalTicks() {
+            long total = 0;
+            for (long tick : ticks) {
+                total += tick;
+            }
+            return total;
+        }
+
+        public double getMeanScore() {
+            return (double) getTotalScore() / scores.length;
+        }
+
+        public double getMeanTicks() {
+            return (double) getTotalTicks() / ticks.length;
+        }
+
+        public double getGamesPerSecond() {
+            return scores.length / (elapsedNanos / 1e9);
+        }
+
+        public double getTicksPerSecond() {
+            return getTotalTicks() / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d games: mean score %.2f, max score %d, mean survival %.0f ticks, "
+                    + "%.0f games/s, %.2fM ticks/s",
+                    getGames(), getMeanScore(), getMaxScore(), getMeanTicks(),
+                    getGamesPerSecond(), getTicksPerSecond() / 1e6);
+        }
+    }
+
+    // Benchmark the baseline agent, optionally logging every measured game to a high-score log:
+    // java BatchEvaluator [games] [threads] [scores file]
+    public static void main(String[] args) throws IOException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        BatchEvaluator evaluator = new BatchEvaluator(GameSimulation.WORLD_WIDTH, GameSimulation.WORLD_HEIGHT, 100_000, threads);
+        evaluator.evaluate(() -> new GapFollowerAgent(0.7), 0, games / 10); // Warm up the JIT
+        HighScoreStore scores = args.length > 2 ? new HighScoreStore(new File(args[2])) : null;
+        evaluator.setScores(scores);
+        System.out.println(threads + " threads, " + evaluator.evaluate(() -> new GapFollowerAgent(0.7), 1, games));
+        evaluator.shutdown();
+        if (scores != null) {
+            scores.close();
+            System.out.println(args[2] + ": " + scores.getCount() + " games, best "
+                    + (scores.getTop().isEmpty() ? "none" : scores.getTop().get(0)));
+        }
+    }
+}
@@ -1,46 +1,73 @@
 import java.awt.*;
-import java.awt.geom.AffineTransform;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 
 public class Bird {
     private double x;
     private double y;
     private double velocity;
     private double rotation;
+    private double prevY; // State at the start of the last tick, for render interpolation
+    private double prevRotation;
     private int frame;
     private double scale;
-    private static final double GRAVITY = 1.0;
-    private static final double JUMP_SPEED = -10.0;
+    static final double GRAVITY = 1.0;
+    static final double JUMP_SPEED = -10.0;
     private static final double ROTATION_SPEED = 5.0;
     private static final int FRAME_DELAY = 5;
-    private static final int BIRD_SIZE = 40;
+    static final int BIRD_SIZE = 40;
+    static final double WING_RANGE = 70; // Peak wing angle in degrees at scale 1
+    private static final Color BODY_COLOR = new Color(255, 255, 0); // Yellow
+    private static final Color WING_COLOR = new Color(255, 165, 0); // Orange, also the beak
+    private static final int PARTICLES_PER_JUMP = 15;
+    private static final int MAX_PARTICLES = 512; // Enough for a jump every tick
     private Rectangle bounds;
     private double wingAngle;
-    private ArrayList<Particle> particles;
+    private ParticleSystem particles;
     private int frameCount;
     private double glowIntensity;
     private double wingSpeed = 0.6;
-    private double wingRange = 70;
+    private boolean particlesEnabled = true;
+    private GameRandom effectsRandom; // Particles only; never feeds back into gameplay
 
-    public Bird(int x, int y, double scale) {
+    public Bird(int x, int y, double scale, GameRandom effectsRandom) {
+        this.scale = scale;
+        this.effectsRandom = effectsRandom;
+        this.bounds = new Rectangle((int) (BIRD_SIZE * scale), (int) (BIRD_SIZE * scale));
+        this.particles = new ParticleSystem(MAX_PARTICLES);
+        reset(x, y);
+    }
+
+    // Back to a freshly constructed bird at (x, y), reusing this one's objects
+    public void reset(int x, int y) {
         this.x = x;
         this.y = y;
         this.velocity = 0;
         this.rotation = 0;
+        this.prevY = y;
+        this.prevRotation = 0;
         this.frame = 0;
-        this.scale = scale;
-        this.bounds = new Rectangle((int) (x - BIRD_SIZE * scale / 2), (int) (y - BIRD_SIZE * scale / 2),
-                (int) (BIRD_SIZE * scale), (int) (BIRD_SIZE * scale));
         this.wingAngle = 0;
-        this.particles = new ArrayList<>();
         this.frameCount = 0;
         this.glowIntensity = 0;
+        bounds.setLocation((int) (x - BIRD_SIZE * scale / 2), (int) (y - BIRD_SIZE * scale / 2));
+        particles.clear();
     }
 
     public void update() {
+        prevY = y;
+        prevRotation = rotation;
         frameCount++;
-        velocity += GRAVITY * scale;
-        y += velocity * scale;
+        if (scale == 1) {
+            // The standard world: velocity in world units per tick, gravity added once per tick
+            velocity += GRAVITY;
+            y += velocity;
+        } else {
+            // A legacy world (see GameSimulation). Games before world units scaled gravity into the
+            // velocity and then the velocity again into the step, and replays from then only verify
+            // with that same arithmetic.
+            velocity += GRAVITY * scale;
+            y += velocity * scale;
+        }
         bounds.setLocation((int) (x - BIRD_SIZE * scale / 2), (int) (y - BIRD_SIZE * scale / 2));
 
         // Rotation based on velocity
@@ -51,54 +78,54 @@ public class Bird {
         frame = (frame + 1) % (3 * FRAME_DELAY);
 
         // Wing animation
-        wingAngle = Math.sin(frameCount * wingSpeed) * wingRange * scale;
+        wingAngle = Math.sin(frameCount * wingSpeed) * WING_RANGE * scale;
 
         // Update particles
-        for (int i = particles.size() - 1; i >= 0; i--) {
-            Particle p = particles.get(i);
-            p.update();
-            if (p.isDead()) {
-                particles.remove(i);
-            }
-        }
+        particles.update();
     }
 
     public void jump() {
         velocity = JUMP_SPEED;
+        if (!particlesEnabled) {
+            return;
+        }
         // Add particles
-        for (int i = 0; i < 15; i++) {
-            particles.add(new Particle(
+        for (int i = 0; i < PARTICLES_PER_JUMP; i++) {
+            particles.spawn(
                     (int) (x - BIRD_SIZE * scale / 2),
                     (int) (y - BIRD_SIZE * scale / 2 + BIRD_SIZE * scale / 2),
-                    -5 + Math.random() * 10,
-                    4 + Math.random() * 5));
+                    -5 + effectsRandom.nextDouble() * 10,
+                    4 + effectsRandom.nextDouble() * 5);
         }
     }
 
-    public void draw(Graphics2D g2d) {
+    // alpha blends between the previous and current tick (0 = previous, 1 = current); zoom is
+    // window pixels per world unit
+    public void draw(Graphics2D g2d, double alpha, double zoom) {
         // Draw particles first
-        for (Particle p : particles) {
-            p.draw(g2d);
-        }
+        particles.draw(g2d, zoom);
 
-        AffineTransform oldTransform = g2d.getTransform();
+        // Blit the pre-rendered frame for the current wing position and rotation
+        double drawY = prevY + (y - prevY) * alpha;
+        double drawRotation = prevRotation + (rotation - prevRotation) * alpha;
+        SpriteCache.forScale(scale * zoom).drawBird(g2d, x * zoom, drawY * zoom, drawRotation,
+                wingAngle / (WING_RANGE * scale));
+    }
 
+    // Vector drawing of the bird centred on the origin; SpriteCache rasterizes this once per frame variant
+    static void paintSprite(Graphics2D g2d, double scale, double wingAngle) {
         // Calculate scaled size
         int scaledSize = (int) (BIRD_SIZE * scale);
 
-        // Apply translation and rotation
-        g2d.translate(x, y);
-        g2d.rotate(Math.toRadians(rotation));
-
         // Draw bird body with border (Yellow)
-        g2d.setColor(new Color(255, 255, 0)); // Yellow
+        g2d.setColor(BODY_COLOR);
         g2d.fillOval(-scaledSize / 2, -scaledSize / 2, scaledSize, scaledSize);
         g2d.setColor(Color.BLACK);
-        g2d.setStroke(new BasicStroke(2 * (float) scale));
+        g2d.setStroke(RenderResources.forScale(scale).getScaledOutline());
         g2d.drawOval(-scaledSize / 2, -scaledSize / 2, scaledSize, scaledSize);
 
         // Draw wing with border (Orange)
-        g2d.setColor(new Color(255, 165, 0)); // Orange
+        g2d.setColor(WING_COLOR);
         g2d.rotate(Math.toRadians(wingAngle));
         g2d.fillOval(-scaledSize / 2, -scaledSize / 4, scaledSize / 2, scaledSize / 2);
         g2d.setColor(Color.BLACK);
@@ -113,15 +140,60 @@ public class Bird {
         g2d.fillOval(scaledSize / 3, -scaledSize / 4, scaledSize / 8, scaledSize / 8);
 
         // Draw beak with border (Orange)
-        g2d.setColor(new Color(255, 165, 0)); // Orange
+        g2d.setColor(WING_COLOR);
         int[] xPoints = { scaledSize / 2, scaledSize / 2 + scaledSize / 4, scaledSize / 2 };
         int[] yPoints = { -scaledSize / 8, 0, scaledSize / 8 };
         g2d.fillPolygon(xPoints, yPoints, 3);
         g2d.setColor(Color.BLACK);
         g2d.drawPolygon(xPoints, yPoints, 3);
+    }
+
+    // Everything update() and draw() depend on; the scale and random stream belong to the game
+    void save(ByteBuffer out) {
+        out.putDouble(x).putDouble(y).putDouble(velocity).putDouble(rotation)
+                .putDouble(prevY).putDouble(prevRotation).putDouble(wingAngle)
+                .putDouble(glowIntensity).putDouble(wingSpeed)
+                .putInt(frame).putInt(frameCount).put((byte) (particlesEnabled ? 1 : 0));
+        particles.save(out);
+    }
+
+    // Without effects the particles are read but dropped, and no new ones spawn
+    void restore(ByteBuffer in, boolean effects) {
+        x = in.getDouble();
+        y = in.getDouble();
+        velocity = in.getDouble();
+        rotation = in.getDouble();
+        prevY = in.getDouble();
+        prevRotation = in.getDouble();
+        wingAngle = in.getDouble();
+        glowIntensity = in.getDouble();
+        wingSpeed = in.getDouble();
+        frame = in.getInt();
+        frameCount = in.getInt();
+        particlesEnabled = in.get() != 0 && effects;
+        bounds.setLocation((int) (x - BIRD_SIZE * scale / 2), (int) (y - BIRD_SIZE * scale / 2));
+        particles.restore(in);
+        if (!effects) {
+            particles.clear();
+        }
+    }
+
+    // Puts the bird where a StateStreamDecoder says it is; only the drawn fields matter there
+    void setStreamedState(double y, double prevY, double rotation, double prevRotation, double wingAngle) {
+        this.y = y;
+        this.prevY = prevY;
+        this.rotation = rotation;
+        this.prevRotation = prevRotation;
+        this.wingAngle = wingAngle;
+        bounds.setLocation((int) (x - BIRD_SIZE * scale / 2), (int) (y - BIRD_SIZE * scale / 2));
+    }
 
-        // Restore the transform
-        g2d.setTransform(oldTransform);
+    int snapshotSize() {
+        return 9 * Double.BYTES + 2 * Integer.BYTES + 1 + particles.snapshotSize();
+    }
+
+    public void setParticlesEnabled(boolean particlesEnabled) {
+        this.particlesEnabled = particlesEnabled;
     }
 
     public Rectangle getBounds() {
@@ -135,55 +207,26 @@ public class Bird {
     public double getY() {
         return y;
     }
-}
 
-class Particle {
-    private double x, y;
-    private double vx, vy;
-    private int life;
-    private static final int MAX_LIFE = 25;
-    private Color color;
-    private double scale;
-    private double rotation;
-
-    public Particle(double x, double y, double vx, double vy) {
-        this.x = x;
-        this.y = y;
-        this.vx = vx;
-        this.vy = vy;
-        this.life = MAX_LIFE;
-        this.color = new Color(255, 255, 255, 200);
-        this.scale = 1.0;
-        this.rotation = Math.random() * Math.PI * 2;
+    // Where the bird was before its last update()
+    public double getPrevY() {
+        return prevY;
     }
 
-    public void update() {
-        x += vx;
-        y += vy;
-        vy += 0.15;
-        life--;
-        float alpha = (float) life / MAX_LIFE;
-        color = new Color(255, 255, 255, (int) (alpha * 200));
-        scale = 1.0 + (1.0 - alpha) * 0.5;
-        rotation += 0.1;
+    public double getVelocity() {
+        return velocity;
     }
 
-    public void draw(Graphics2D g) {
-        AffineTransform oldTransform = g.getTransform();
-        g.translate(x, y);
-        g.rotate(rotation);
-
-        g.setColor(color);
-        int size = (int) (4 * scale);
-        g.fillOval(-size / 2, -size / 2, size, size);
-        // Keeping particle border as it was already there
-        g.setColor(new Color(0, 0, 0, (int) (color.getAlpha() * 0.5)));
-        g.drawOval(-size / 2, -size / 2, size, size);
+    double getRotation() {
+        return rotation;
+    }
 
-        g.setTransform(oldTransform);
+    double getPrevRotation() {
+        return prevRotation;
     }
 
-    public boolean isDead() {
-        return life <= 0;
+    // Fraction of the peak wing angle, -1 to 1
+    double getWingPhase() {
+        return wingAngle / (WING_RANGE * scale);
     }
-}
\ No newline at end of file
+}
@@ -1,62 +1,86 @@
 import java.awt.*;
 import java.awt.geom.Area;
 import java.awt.geom.Ellipse2D;
+import java.nio.ByteBuffer;
 
 public class Cloud {
     private double x;
+    private double prevX; // Position at the start of the last tick, for render interpolation
     private double y;
     private double speed;
     private double scale;
     private static final double BASE_SPEED = 0.5;
-    private static final int BASE_SIZE = 60;
+    static final int BASE_SIZE = 60;
     private double wobbleOffset;
+    private GameRandom random;
 
-    public Cloud(int x, int y, double scale) {
+    public Cloud(int x, int y, double scale, GameRandom random) {
         this.x = x;
+        this.prevX = x;
         this.y = y;
-        this.speed = BASE_SPEED * (0.5 + Math.random() * 0.5);
+        this.random = random;
+        this.speed = BASE_SPEED * (0.5 + random.nextDouble() * 0.5);
         this.scale = scale;
         this.wobbleOffset = 0;
     }
 
     public void update() {
+        prevX = x;
         x += speed * scale;
         wobbleOffset = Math.sin(x * 0.02) * 3 * scale;
     }
 
     public void reset(int width) {
         x = -BASE_SIZE * scale;
-        y = Math.random() * 200 * scale;
+        prevX = x;
+        y = random.nextDouble() * 200 * scale;
     }
 
-    public void draw(Graphics2D g2d) {
+    // zoom is window pixels per world unit
+    public void draw(Graphics2D g2d, double alpha, double zoom) {
+        double shift = wobbleOffset + (prevX - x) * (1 - alpha);
+        SpriteCache.forScale(scale * zoom).drawCloud(g2d, (x + shift) * zoom, y * zoom);
+    }
+
+    // Cloud shape with its main body's top-left corner at the origin
+    static void paintSprite(Graphics2D g2d, double scale) {
         int size = (int) (BASE_SIZE * scale);
 
         // Create a combined shape for the cloud
         Area cloudShape = new Area();
 
         // Add main cloud body
-        cloudShape.add(new Area(new Ellipse2D.Double(x, y, size, size)));
+        cloudShape.add(new Area(new Ellipse2D.Double(0, 0, size, size)));
 
         // Add top cloud puff
-        cloudShape.add(new Area(new Ellipse2D.Double(x + size / 3, y - size / 4, size, size)));
+        cloudShape.add(new Area(new Ellipse2D.Double(size / 3, -size / 4, size, size)));
 
         // Add bottom cloud puff
-        cloudShape.add(new Area(new Ellipse2D.Double(x + size / 2, y + size / 4, size, size)));
+        cloudShape.add(new Area(new Ellipse2D.Double(size / 2, size / 4, size, size)));
 
         // Draw cloud with gradient
         GradientPaint cloudGradient = new GradientPaint(
-                (int) x, (int) y,
+                0, 0,
                 new Color(255, 255, 255, 200), // White with opacity
-                (int) x + size, (int) y + size,
+                size, size,
                 new Color(240, 240, 240, 150) // Light grey with opacity
         );
         g2d.setPaint(cloudGradient);
-        g2d.translate(wobbleOffset, 0);
         g2d.fill(cloudShape);
+    }
+
+    static final int SNAPSHOT_BYTES = 5 * Double.BYTES;
+
+    void save(ByteBuffer out) {
+        out.putDouble(x).putDouble(prevX).putDouble(y).putDouble(speed).putDouble(wobbleOffset);
+    }
 
-        // Reset translation
-        g2d.translate(-wobbleOffset, 0);
+    void restore(ByteBuffer in) {
+        x = in.getDouble();
+        prevX = in.getDouble();
+        y = in.getDouble();
+        speed = in.getDouble();
+        wobbleOffset = in.getDouble();
     }
 
     public double getX() {
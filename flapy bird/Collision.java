@@ -0,0 +1,148 @@
+// Primitive-only pipe collision tests. Rectangles follow java.awt.geom.Rectangle2D.intersects:
+// edges that only touch do not count, and empty rectangles never hit anything. The circle tests
+// follow the same rule: a circle that only touches a rectangle misses it.
+final class Collision {
+    private Collision() {
+    }
+
+    // The bird's box at its current position against both halves of the pipe
+    static boolean boxHitsPipe(int left, int top, int size, Pipe pipe) {
+        double x = pipe.getX();
+        double width = pipe.getWidth();
+        if (size <= 0 || !(x + width > left && x < left + size)) {
+            return false;
+        }
+        double topHeight = pipe.getGapY();
+        double bottomY = topHeight + pipe.getGapHeight();
+        double bottomHeight = pipe.getBottomHeight();
+        return (topHeight > 0 && topHeight > top && 0 < top + size)
+                || (bottomHeight > 0 && bottomY + bottomHeight > top && bottomY < top + size);
+    }
+
+    // The bird's box moving from prevTop to top while the pipe moves from its previous x to its
+    // current one. Both move in straight lines, so in the pipe's frame the box travels one segment.
+    static boolean sweptBoxHitsPipe(int left, int prevTop, int top, int size, Pipe pipe) {
+        if (size <= 0) {
+            return false;
+        }
+        // Seen from the pipe, which moved left by dx, the box started dx further left and moved right
+        double dx = pipe.getPrevX() - pipe.getX();
+        double startX = left - dx;
+        double topHeight = pipe.getGapY();
+        double bottomY = topHeight + pipe.getGapHeight();
+        double bottomHeight = pipe.getBottomHeight();
+        return (topHeight > 0
+                && sweptBoxHitsRect(startX, prevTop, dx, top - prevTop, size, pipe.getX(), 0, pipe.getWidth(), topHeight))
+                || (bottomHeight > 0
+                && sweptBoxHitsRect(startX, prevTop, dx, top - prevTop, size, pipe.getX(), bottomY, pipe.getWidth(), bottomHeight));
+    }
+
+    // The bird's drawn circle against the pipe as drawn: both bodies plus the caps, which stick
+    // out Pipe.CAP_OVERHANG on each side. Cap sizes are world units, so like the drawing they grow
+    // with the world's scale. The centre moves from (cx, prevCy) to (cx, cy) while the pipe moves
+    // from its previous x to its current one, as in sweptBoxHitsPipe.
+    static boolean sweptCircleHitsPipe(double cx, double prevCy, double cy, double radius, double scale, Pipe pipe) {
+        double dx = pipe.getPrevX() - pipe.getX();
+        double startX = cx - dx;
+        double dy = cy - prevCy;
+        double x = pipe.getX();
+        double width = pipe.getWidth();
+        double overhang = Pipe.CAP_OVERHANG * scale;
+        double capHeight = Pipe.CAP_HEIGHT * scale;
+        double capX = x - overhang;
+        double capWidth = width + overhang * 2;
+        if (!(cx + radius > capX && startX - radius < capX + capWidth)) {
+            return false; // The caps are the widest part
+        }
+        double topHeight = pipe.getGapY();
+        double bottomY = topHeight + pipe.getGapHeight();
+        double lowY = dy < 0 ? cy : prevCy;
+        double highY = dy < 0 ? prevCy : cy;
+        if (lowY - radius >= topHeight && highY + radius <= bottomY) {
+            return false; // Clear of both caps and bodies for the whole tick, the usual case
+        }
+        double bottomHeight = pipe.getBottomHeight();
+        return (topHeight > 0 && sweptCircleHitsRect(startX, prevCy, dx, dy, radius, x, 0, width, topHeight))
+                || sweptCircleHitsRect(startX, prevCy, dx, dy, radius, capX, topHeight - capHeight,
+                        capWidth, capHeight)
+                || sweptCircleHitsRect(startX, prevCy, dx, dy, radius, capX, bottomY, capWidth, capHeight)
+                || (bottomHeight > 0
+                        && sweptCircleHitsRect(startX, prevCy, dx, dy, radius, x, bottomY, width, bottomHeight));
+    }
+
+    // A circle of radius r whose centre moves from (x, y) by (dx, dy) against the rectangle
+    // (rx, ry, rw, rh). The centre has to come within r of the rectangle, i.e. enter the rectangle
+    // with rounded corners that is the union of the rectangle widened by r, the rectangle
+    // heightened by r and a circle of radius r on each corner.
+    static boolean sweptCircleHitsRect(double x, double y, double dx, double dy, double r,
+            double rx, double ry, double rw, double rh) {
+        double lowX = dx < 0 ? x + dx : x;
+        double highX = dx < 0 ? x : x + dx;
+        double lowY = dy < 0 ? y + dy : y;
+        double highY = dy < 0 ? y : y + dy;
+        if (!(highX > rx - r && lowX < rx + rw + r && highY > ry - r && lowY < ry + rh + r)) {
+            return false;
+        }
+        if (lowX > rx && highX < rx + rw) {
+            return true; // Level with the rectangle all tick, so only the vertical distance counts
+        }
+        return sweptHits(entry(x, dx, rx - r, rx + rw + r), exit(x, dx, rx - r, rx + rw + r), y, dy, ry, ry + rh)
+                || sweptHits(entry(x, dx, rx, rx + rw), exit(x, dx, rx, rx + rw), y, dy, ry - r, ry + rh + r)
+                || segmentNear(x, y, dx, dy, rx, ry, r)
+                || segmentNear(x, y, dx, dy, rx + rw, ry, r)
+                || segmentNear(x, y, dx, dy, rx, ry + rh, r)
+                || segmentNear(x, y, dx, dy, rx + rw, ry + rh, r);
+    }
+
+    // Whether the segment from (x, y) to (x + dx, y + dy) passes strictly within r of (px, py)
+    static boolean segmentNear(double x, double y, double dx, double dy, double px, double py, double r) {
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - x) * dx + (py - y) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double ex = x + dx * t - px;
+        double ey = y + dy * t - py;
+        return ex * ex + ey * ey < r * r;
+    }
+
+    // A size x size box with top-left (x, y) moving by (dx, dy) against the rectangle (rx, ry, rw, rh).
+    // Slab test on the rectangle grown by the box size: the open time intervals in which the box
+    // overlaps on each axis must share a moment in [0, 1].
+    static boolean sweptBoxHitsRect(double x, double y, double dx, double dy, int size,
+            double rx, double ry, double rw, double rh) {
+        return sweptHits(entry(x, dx, rx - size, rx + rw), exit(x, dx, rx - size, rx + rw),
+                y, dy, ry - size, ry + rh);
+    }
+
+    // The y half of the slab test, for callers that share one x interval between many boxes
+    static boolean sweptHits(double enterX, double exitX, double y, double dy, double minY, double maxY) {
+        // Most boxes are nowhere near the rectangle vertically; and while the box is level with
+        // the rectangle for the whole tick, touching it vertically at any moment is a hit
+        double low = dy < 0 ? y + dy : y;
+        double high = dy < 0 ? y : y + dy;
+        if (!(high > minY && low < maxY)) {
+            return false;
+        }
+        if (enterX <= 0 && exitX >= 1) {
+            return true;
+        }
+        double enter = Math.max(enterX, entry(y, dy, minY, maxY));
+        double exit = Math.min(exitX, exit(y, dy, minY, maxY));
+        return enter < exit && enter < 1 && exit > 0;
+    }
+
+    // When p + t * d first lies strictly inside (min, max); +infinity if it never does
+    static double entry(double p, double d, double min, double max) {
+        if (d == 0) {
+            return p > min && p < max ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+        return Math.min((min - p) / d, (max - p) / d);
+    }
+
+    // When p + t * d last lies inside (min, max); -infinity if it never does
+    static double exit(double p, double d, double min, double max) {
+        if (d == 0) {
+            return p > min && p < max ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+        }
+        return Math.max((min - p) / d, (max - p) / d);
+    }
+}
@@ -0,0 +1,13 @@
+// How the bird is tested against pipes. Changing the mode changes which games end where, so it
+// is part of what a replay records.
+public enum CollisionMode {
+    // The bird's box against each pipe's box at the end of the tick only; games recorded before
+    // swept collision (replay format 1) were played this way
+    DISCRETE_BOX,
+    // The bird's box swept along its path relative to the pipe over the whole tick, so a fast
+    // bird or fast pipes cannot skip over an overlap between two ticks
+    SWEPT_BOX,
+    // The circle the bird is drawn as, swept like SWEPT_BOX, against the pipes as they are drawn
+    // including the caps, so a hit is exactly when the pictures overlap
+    CIRCLE
+}
@@ -0,0 +1,596 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Works out the gaps of the CourseMode.REACHABLE course for one seed, so that a bird can always
+// get from one gap to the next. Gaps are drawn from the seed like RANDOM courses draw them, and
+// each is kept only if some bird can still be alive once it has flown past that pipe.
+//
+// Whether one can is found by tracking every state a bird could be in. In the standard world a
+// bird's y and velocity stay whole numbers (Bird.update adds GRAVITY to the velocity and the
+// velocity to y), so the reachable states after any tick are, for each velocity, a set of
+// whole y. Each set is kept as its runs of consecutive y, and is nearly always one run or none.
+// A tick moves each row by its velocity into the row below, for not jumping, and merges every
+// row into the jump row. Then pipes and the ground cut the runs down to the y that would not
+// have hit them. A pipe cuts conservatively: the bird's whole box over the tick against the
+// pipe's whole column, caps included. Whatever survives that survives every CollisionMode.
+//
+// Pipes do not change how the course scrolls, scores and speeds up, so a PipeCourse scrolls
+// alongside with placeholder gaps. A gap is chosen just before its pipe can first reach the
+// bird, from the states at that tick, and checked by running on until the pipe has gone past.
+// When no draw passes, the nearest passing gap to the last one is taken instead.
+//
+// Generators are cached by seed. Each one works on a shared pool, PIPES_AHEAD pipes beyond the
+// pipes games have asked for, so in real time a pipe is ready long before it spawns. A game that
+// knows its next seed can prepare() it, so the generator is built and a level is placed before
+// the game resets onto it. A game never places pipes itself: one that gets ahead of the pool (a
+// headless game ticking faster than real time, or one reset onto an unprepared seed) waits for
+// it, since the course must not depend on who placed it.
+public class CourseGenerator {
+    private static final int WIDTH = GameSimulation.WORLD_WIDTH;
+    private static final int HEIGHT = GameSimulation.WORLD_HEIGHT;
+    private static final int GROUND_HEIGHT = (int) (HEIGHT * GameSimulation.GROUND_HEIGHT_RATIO);
+    private static final double BIRD_X = WIDTH / 4;
+    private static final int START_Y = HEIGHT / 2;
+    private static final int RADIUS = Bird.BIRD_SIZE / 2; // Half the box; the circle fits inside it
+    private static final int LOWEST_Y = 1; // y <= 0 hits the ceiling
+    private static final int HIGHEST_Y = (int) Math.ceil(HEIGHT - HEIGHT * GameSimulation.GROUND_HEIGHT_RATIO) - 1;
+    private static final int GRAVITY = (int) Bird.GRAVITY;
+    private static final int JUMP_VELOCITY = (int) Bird.JUMP_SPEED + GRAVITY; // After the jump's own update
+    private static final int MIN_VELOCITY = JUMP_VELOCITY;
+    private static final int MAX_VELOCITY = 40; // Falling the whole height from a jump ends near 32
+    private static final int ROWS = MAX_VELOCITY - MIN_VELOCITY + 1;
+    private static final int JUMP_ROW = JUMP_VELOCITY - MIN_VELOCITY;
+    private static final int MAX_DRAWS = 8; // Random gaps tried before searching near the last one
+    private static final int FALLBACK_STEPS = 32; // Spacing of that search
+    private static final int PIPES_AHEAD = 8; // More than a level, so a level-up never catches the pool
+    private static final int CACHE_SIZE = 256; // Seeds
+    private static final ForkJoinPool WORKERS = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private static volatile States openSky; // When the first pipe can first hit; see the constructor
+    private static int openSkyTicks; // Written before openSky
+    private static final Map<Long, CourseGenerator> CACHE = new LinkedHashMap<Long, CourseGenerator>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CourseGenerator> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    // Read without locking: count is written after the arrays, and the arrays only grow by copy
+    private volatile double[] positions = new double[64];
+    private volatile int count; // Pipes with a position
+    private final AtomicInteger requested = new AtomicInteger(); // Pipes asked of the pool
+
+    // Everything below is only touched while holding lock, which the pool takes once per pipe
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition placed = lock.newCondition(); // Signalled whenever count grows
+    private final GameRandom random;
+    private final PipeCourse course;
+    private ByteBuffer startCourse;
+    private ByteBuffer nextCourse;
+    private States startStates = new States(); // When the next pipe to place can first hit
+    private States nextStates = new States(); // The same for the pipe after it
+    private States states = new States();
+    private States stepped = new States();
+    private int[] union = new int[16]; // The jump row's runs as they are merged
+    private int merged; // Ints of union in use
+    private int[] spawnLevels = new int[64];
+    private int spawnsSeen;
+    private boolean firstRunPending = true;
+    private int redrawn; // Pipes whose first draw no bird could reach
+    private int forced; // Pipes placed where no bird could reach at all
+
+    private CourseGenerator(long seed) {
+        random = new GameRandom(seed);
+        course = new PipeCourse(WIDTH, HEIGHT, GROUND_HEIGHT, 1.0);
+        course.setMode(CourseMode.RANDOM);
+        course.reset(seed);
+        recordSpawns();
+        // Until the first pipe can reach the bird every course is open sky, so the states then are
+        // the same for every seed; only the course has to be scrolled that far. The first
+        // generators may each work the states out, which only costs a few hundred ticks.
+        States sky = openSky;
+        if (sky == null) {
+            states.set(0, START_Y);
+            int ticks = 0;
+            while (course.getSpawned() == 0 || !nearing(0)) {
+                tick(-1, 0);
+                ticks++;
+            }
+            sky = new States();
+            sky.copyFrom(states);
+            openSkyTicks = ticks;
+            openSky = sky;
+        } else {
+            for (int t = 0; t < openSkyTicks; t++) {
+                course.update(BIRD_X);
+                recordSpawns();
+            }
+        }
+        startStates.copyFrom(sky);
+        startCourse = ByteBuffer.allocate(PipeCourse.MAX_SNAPSHOT_BYTES);
+        nextCourse = ByteBuffer.allocate(PipeCourse.MAX_SNAPSHOT_BYTES);
+        saveCourse(startCourse);
+
+        // The first pipe is far enough off for any gap; it is placed now so reset() never waits
+        publish(random.nextDouble());
+    }
+
+    // The shared generator for seed. A new one is built outside the cache's lock, so games
+    // starting on different seeds never wait on each other; if two build one for the same seed,
+    // the first into the cache wins.
+    static CourseGenerator forSeed(long seed) {
+        synchronized (CACHE) {
+            CourseGenerator cached = CACHE.get(seed);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        CourseGenerator created = new CourseGenerator(seed);
+        synchronized (CACHE) {
+            CourseGenerator cached = CACHE.putIfAbsent(seed, created);
+            return cached != null ? cached : created;
+        }
+    }
+
+    // Builds seed's generator and places its first pipes on the pool, for a game about to reset
+    // onto it
+    static void prepare(long seed) {
+        WORKERS.execute(() -> forSeed(seed).request(1 + PIPES_AHEAD));
+    }
+
+    // Position in [0, 1) of the gap of the given pipe (0 for the first after reset), for
+    // Pipe.reset. Asks the pool for the pipes after it, and waits for the pool if it has not
+    // placed this one yet.
+    double position(int pipe) {
+        request(pipe + 1 + PIPES_AHEAD);
+        if (pipe >= count) {
+            lock.lock();
+            try {
+                while (pipe >= count) {
+                    placed.awaitUninterruptibly();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return positions[pipe];
+    }
+
+    // Has the pool place pipes until there are wanted of them, unless it already is
+    private void request(int wanted) {
+        if (count < wanted && requested.get() < wanted && requested.getAndAccumulate(wanted, Math::max) < wanted) {
+            WORKERS.execute(() -> generate(wanted, 0));
+        }
+    }
+
+    // Places pipes until there are at least pipes of them and every pipe spawning at level or
+    // below has one
+    private void generate(int pipes, int level) {
+        while (true) {
+            lock.lock();
+            try {
+                if (count >= pipes && nextLevel() > level) {
+                    return;
+                }
+                placeNext();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Level the next pipe to place spawns at, once the run that spawns it has happened
+    private int nextLevel() {
+        return count < spawnsSeen ? spawnLevels[count] : 0;
+    }
+
+    private void placeNext() {
+        if (firstRunPending) {
+            run(0, positions[0], true);
+            swap();
+            firstRunPending = false;
+        }
+        int pipe = count;
+        double chosen = Double.NaN;
+        double first = random.nextDouble();
+        if (!startStates.isEmpty()) {
+            for (int draw = 0; draw < MAX_DRAWS && Double.isNaN(chosen); draw++) {
+                double position = draw == 0 ? first : random.nextDouble();
+                if (run(pipe, position, false)) {
+                    chosen = position;
+                }
+            }
+            double last = positions[pipe - 1];
+            for (int step = 1; step <= FALLBACK_STEPS && Double.isNaN(chosen); step++) {
+                for (int sign = -1; sign <= 1 && Double.isNaN(chosen); sign += 2) {
+                    double position = last + sign * step / (double) FALLBACK_STEPS;
+                    if (position >= 0 && position < 1 && run(pipe, position, false)) {
+                        chosen = position;
+                    }
+                }
+            }
+        }
+        if (Double.isNaN(chosen) || chosen != first) {
+            redrawn++;
+        }
+        if (Double.isNaN(chosen)) {
+            forced++;
+            chosen = first;
+            run(pipe, chosen, true); // Only to reach the next pipe
+        }
+        swap();
+        publish(chosen);
+        placed.signalAll();
+    }
+
+    // Runs from when pipe can first hit, with its gap at position, until it has gone past the
+    // bird, saving the states at the tick the pipe after it can first hit. Returns whether any
+    // bird is still alive; unless finish is set, stops as soon as none is.
+    private boolean run(int pipe, double position, boolean finish) {
+        restoreCourse(startCourse);
+        states.copyFrom(startStates);
+        boolean saved = false;
+        boolean alive = !states.isEmpty();
+        while (true) {
+            if (!saved && course.getSpawned() > pipe + 1 && nearing(pipe + 1)) {
+                saveCourse(nextCourse);
+                nextStates.copyFrom(states);
+                saved = true;
+            }
+            if (saved && passed(pipe)) {
+                return alive;
+            }
+            if (!finish && !alive) {
+                return false;
+            }
+            alive = tick(pipe, position);
+        }
+    }
+
+    // One GameSimulation tick for every state: the bird moves, the pipes move, then pipes up to
+    // lastPipe (at position) and the ground and ceiling remove the states they hit. Returns
+    // whether any state is left.
+    private boolean tick(int lastPipe, double position) {
+        course.update(BIRD_X);
+        recordSpawns();
+
+        // The y a bird at rest could have beside every pipe it overlaps
+        double[] placed = positions;
+        PipeRing pipes = course.getPipes();
+        int firstIndex = course.getSpawned() - pipes.size();
+        boolean overlapping = false;
+        int pipeLow = Integer.MIN_VALUE;
+        int pipeHigh = Integer.MAX_VALUE;
+        for (int i = 0; i < pipes.size() && firstIndex + i <= lastPipe; i++) {
+            Pipe pipe = pipes.get(i);
+            if (pipe.getX() - Pipe.CAP_OVERHANG >= BIRD_X + RADIUS
+                    || pipe.getPrevX() + pipe.getWidth() + Pipe.CAP_OVERHANG <= BIRD_X - RADIUS) {
+                continue;
+            }
+            double top = Pipe.gapTop(HEIGHT, pipe.getGapHeight(), GROUND_HEIGHT, 1.0,
+                    firstIndex + i == lastPipe ? position : placed[firstIndex + i]);
+            overlapping = true;
+            pipeLow = Math.max(pipeLow, (int) Math.ceil(top + RADIUS));
+            pipeHigh = Math.min(pipeHigh, (int) Math.floor(top + pipe.getGapHeight() - RADIUS));
+        }
+        // Not jumping moves each row into the one a GRAVITY faster, by that row's velocity;
+        // jumping moves every state into the jump row
+        stepped.clear();
+        for (int row = 0; row < ROWS; row++) {
+            // From prevY = y - velocity to y, the box must stay clear of both pipes
+            int velocity = MIN_VELOCITY + row;
+            int low = overlapping ? Math.max(LOWEST_Y, pipeLow + Math.max(velocity, 0)) : LOWEST_Y;
+            int high = overlapping ? Math.min(HIGHEST_Y, pipeHigh - Math.max(-velocity, 0)) : HIGHEST_Y;
+            if (row == JUMP_ROW) {
+                jump(row, low, high);
+            } else if (row >= GRAVITY) {
+                int from = row - GRAVITY;
+                for (int i = states.start(from); i < states.end(from); i += 2) {
+                    int runLow = Math.max(states.runs[i] + velocity, low);
+                    int runHigh = Math.min(states.runs[i + 1] + velocity, high);
+                    if (runLow <= runHigh) {
+                        stepped.add(runLow, runHigh);
+                    }
+                }
+            }
+            stepped.endRow(row);
+        }
+        States swap = states;
+        states = stepped;
+        stepped = swap;
+        return !states.isEmpty();
+    }
+
+    // Adds the jump row's runs within [low, high] to stepped. Runs from every row land there in
+    // no particular order, so they are merged into a sorted list first; it rarely holds more than
+    // a run or two.
+    private void jump(int row, int low, int high) {
+        merged = 0;
+        for (int i = 0; i < states.size; i += 2) {
+            merge(Math.max(states.runs[i] + JUMP_VELOCITY, low), Math.min(states.runs[i + 1] + JUMP_VELOCITY, high));
+        }
+        if (row >= GRAVITY) {
+            int velocity = MIN_VELOCITY + row;
+            for (int i = states.start(row - GRAVITY); i < states.end(row - GRAVITY); i += 2) {
+                merge(Math.max(states.runs[i] + velocity, low), Math.min(states.runs[i + 1] + velocity, high));
+            }
+        }
+        for (int i = 0; i < merged; i += 2) {
+            stepped.add(union[i], union[i + 1]);
+        }
+    }
+
+    // Adds [low, high] to the sorted runs in union, joining any it overlaps or touches
+    private void merge(int low, int high) {
+        if (low > high) {
+            return;
+        }
+        int first = 0;
+        while (first < merged && union[first + 1] < low - 1) {
+            first += 2;
+        }
+        int end = first;
+        while (end < merged && union[end] <= high + 1) {
+            low = Math.min(low, union[end]);
+            high = Math.max(high, union[end + 1]);
+            end += 2;
+        }
+        if (end == first) {
+            // Opens a slot for a run that touches nothing
+            if (merged == union.length) {
+                union = Arrays.copyOf(union, merged * 2);
+            }
+            System.arraycopy(union, first, union, first + 2, merged - first);
+            merged += 2;
+            end = first + 2;
+        } else if (end > first + 2) {
+            System.arraycopy(union, end, union, first + 2, merged - end);
+            merged -= end - first - 2;
+        }
+        union[first] = low;
+        union[first + 1] = high;
+    }
+
+    // Whether pipe can reach the bird during the coming tick
+    private boolean nearing(int pipe) {
+        Pipe p = course.getPipes().get(pipe - (course.getSpawned() - course.getPipes().size()));
+        return p.getX() - p.getSpeed() - Pipe.CAP_OVERHANG < BIRD_X + RADIUS;
+    }
+
+    // Whether pipe can no longer reach the bird
+    private boolean passed(int pipe) {
+        int index = pipe - (course.getSpawned() - course.getPipes().size());
+        if (index < 0) {
+            return true;
+        }
+        Pipe p = course.getPipes().get(index);
+        return p.getX() + p.getWidth() + Pipe.CAP_OVERHANG <= BIRD_X - RADIUS;
+    }
+
+    private void recordSpawns() {
+        while (spawnsSeen < course.getSpawned()) {
+            if (spawnsSeen == spawnLevels.length) {
+                spawnLevels = Arrays.copyOf(spawnLevels, spawnsSeen * 2);
+            }
+            spawnLevels[spawnsSeen++] = course.getLevel();
+        }
+    }
+
+    private void publish(double position) {
+        int pipe = count;
+        if (pipe == positions.length) {
+            positions = Arrays.copyOf(positions, pipe * 2);
+        }
+        positions[pipe] = position;
+        count = pipe + 1;
+    }
+
+    // The saved states for the next pipe become the starting point
+    private void swap() {
+        States states = startStates;
+        startStates = nextStates;
+        nextStates = states;
+        ByteBuffer course = startCourse;
+        startCourse = nextCourse;
+        nextCourse = course;
+    }
+
+    private void saveCourse(ByteBuffer out) {
+        out.clear();
+        course.save(out);
+        out.flip();
+    }
+
+    private void restoreCourse(ByteBuffer in) {
+        course.restore(in.duplicate());
+    }
+
+    // Reachable states: for each velocity row, its y as sorted, disjoint runs [low, high] of
+    // consecutive y, stored one row after another
+    private static final class States {
+        int[] runs = new int[4 * ROWS]; // low, high, low, high, ...
+        final int[] rowEnds = new int[ROWS]; // Where each row's runs end in runs
+        int size; // Ints of runs in use
+
+        int start(int row) {
+            return row == 0 ? 0 : rowEnds[row - 1];
+        }
+
+        int end(int row) {
+            return rowEnds[row];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        // Rows are built in order: clear, then add each row's runs and end it
+        void clear() {
+            size = 0;
+        }
+
+        void add(int low, int high) {
+            if (size == runs.length) {
+                runs = Arrays.copyOf(runs, size * 2);
+            }
+            runs[size++] = low;
+            runs[size++] = high;
+        }
+
+        void endRow(int row) {
+            rowEnds[row] = size;
+        }
+
+        // Only the one state
+        void set(int velocity, int y) {
+            clear();
+            for (int row = 0; row < ROWS; row++) {
+                if (row == velocity - MIN_VELOCITY) {
+                    add(y, y);
+                }
+                endRow(row);
+            }
+        }
+
+        void copyFrom(States other) {
+            if (runs.length < other.size) {
+                runs = new int[other.runs.length];
+            }
+            System.arraycopy(other.runs, 0, runs, 0, other.size);
+            System.arraycopy(other.rowEnds, 0, rowEnds, 0, ROWS);
+            size = other.size;
+        }
+
+        boolean contains(int row, int y) {
+            for (int i = start(row); i < end(row); i += 2) {
+                if (y >= runs[i] && y <= runs[i + 1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // Jumps from reset, one flag per tick, that keep a bird alive in every collision mode until
+    // the first pipe without a position can reach it. Found by running the placed course from
+    // the start and walking back from any survivor; null if there is none.
+    private static boolean[] witness(long seed, double[] positions, int count) {
+        CourseGenerator replay = new CourseGenerator(seed);
+        replay.positions = positions;
+        replay.course.reset(seed);
+        replay.states.set(0, START_Y);
+        List<States> history = new ArrayList<>();
+        while (replay.course.getSpawned() <= count || !replay.nearing(count)) {
+            States before = new States();
+            before.copyFrom(replay.states);
+            history.add(before);
+            replay.tick(count - 1, positions[count - 1]);
+        }
+
+        if (replay.states.isEmpty()) {
+            return null;
+        }
+        int row = 0;
+        while (replay.states.start(row) == replay.states.end(row)) {
+            row++;
+        }
+        int y = replay.states.runs[replay.states.start(row)];
+        boolean[] jumps = new boolean[history.size()];
+        for (int t = history.size() - 1; t >= 0; t--) {
+            States before = history.get(t);
+            int velocity = MIN_VELOCITY + row;
+            y -= velocity;
+            if (row == JUMP_ROW) {
+                jumps[t] = true;
+                row = 0;
+                while (!before.contains(row, y)) {
+                    row++;
+                }
+            } else {
+                row -= GRAVITY;
+            }
+        }
+        return jumps;
+    }
+
+    // A witness through the first levels of seed's course, generated on this thread
+    static boolean[] witness(long seed, int levels) {
+        CourseGenerator generator = new CourseGenerator(seed);
+        generator.generate(0, levels);
+        return witness(seed, generator.positions, generator.count);
+    }
+
+    // Checks the course on this thread: java CourseGenerator [seeds] [levels]. Every seed's
+    // course is generated through the given level, then a witness is played through the real
+    // GameSimulation in each collision mode and must survive to the last pipe placed.
+    public static void main(String[] args) {
+        int seeds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int levels = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        long totalNanos = 0;
+        int totalPipes = 0;
+        int totalRedrawn = 0;
+        int totalForced = 0;
+        int failures = 0;
+        for (long seed = 1; seed <= seeds; seed++) {
+            CourseGenerator generator = new CourseGenerator(seed);
+            long start = System.nanoTime();
+            generator.generate(0, levels);
+            long nanos = System.nanoTime() - start;
+            totalNanos += nanos;
+            totalPipes += generator.count;
+            totalRedrawn += generator.redrawn;
+            totalForced += generator.forced;
+
+            String result;
+            boolean[] jumps = witness(seed, generator.positions, generator.count);
+            if (jumps == null) {
+                result = "no bird survives";
+                failures++;
+            } else {
+                result = "witness survives " + jumps.length + " ticks to score " + play(seed, jumps, null)
+                        + " in every mode";
+                for (CollisionMode mode : CollisionMode.values()) {
+                    if (play(seed, jumps, mode) < 0) {
+                        result = "witness DIES in " + mode;
+                        failures++;
+                        break;
+                    }
+                }
+            }
+            System.out.printf("seed %d: %d pipes in %.1f ms, %d redrawn, %d forced; %s%n", seed, generator.count,
+                    nanos / 1e6, generator.redrawn, generator.forced, result);
+        }
+        System.out.printf("%.2f ms per level, %.1f%% of first draws unreachable, %d pipes forced, %d failures%n",
+                totalNanos / 1e6 / seeds / levels, 100.0 * totalRedrawn / totalPipes, totalForced, failures);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    // Score after playing jumps on the REACHABLE course for seed, or -1 if the bird dies first
+    private static int play(long seed, boolean[] jumps, CollisionMode mode) {
+        GameSimulation simulation = new GameSimulation(false, seed);
+        simulation.setCourseMode(CourseMode.REACHABLE);
+        simulation.reset(seed);
+        if (mode != null) {
+            simulation.setCollisionMode(mode);
+        }
+        for (boolean jump : jumps) {
+            if (jump) {
+                simulation.jump();
+            }
+            simulation.tick();
+            if (simulation.isGameOver()) {
+                return -1;
+            }
+        }
+        return simulation.getScore();
+    }
+}
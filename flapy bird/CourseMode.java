@@ -0,0 +1,10 @@
+// How pipe gaps are placed. Changing the mode changes every course, so it is part of what a
+// replay records.
+public enum CourseMode {
+    // Each gap drawn uniformly on its own; past the first few levels some pairs of gaps are too
+    // far apart for any bird, so games recorded before replay format 3 end there
+    RANDOM,
+    // Gaps drawn the same way but kept only if a bird can reach them from the gaps before, as
+    // worked out by CourseGenerator; standard world only
+    REACHABLE
+}
@@ -1,276 +1,375 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.util.ArrayList;
-import java.util.Random;
-
-public class FlappyBird extends JPanel implements ActionListener, KeyListener {
+import java.awt.image.BufferStrategy;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+// The game window: a Canvas the game loop thread renders into directly through a BufferStrategy,
+// instead of asking Swing to repaint on the EDT
+public class FlappyBird extends Canvas implements KeyListener {
     private static final double SCALE_FACTOR = 0.8; // Scale factor for the game window
-    private int width;
-    private int height;
     private static final int DELAY = 20;
-    private static final double GRAVITY = 1.0;
-    private static final double JUMP_SPEED = -10.0;
-    private static final double INITIAL_PIPE_SPEED = 3.0;
-    private static final double PIPE_GAP_RATIO = 0.25; // 25% of screen height
-    private static final double INITIAL_PIPE_SPACING_RATIO = 0.4; // 40% of screen width
-    private static final double GROUND_HEIGHT_RATIO = 0.15; // 15% of screen height
-    private static final int LEVEL_UP_SCORE = 5;
-    private static final double SPEED_INCREASE = 0.5;
-
-    private Bird bird;
-    private ArrayList<Pipe> pipes;
-    private ArrayList<Cloud> clouds;
-    private ArrayList<ScorePopup> scorePopups;
-    private Timer timer;
-    private boolean gameOver;
-    private int score;
-    private int level;
-    private double pipeSpeed;
-    private double pipeSpacing;
-    private Random random;
-    private double groundOffset;
-    private double parallaxOffset;
-    private int levelUpTimer;
-    private double scale;
+    private static final int DEFAULT_FPS = 60;
+    private static final int MIN_BUFFERS = 2;
+    private static final int MAX_BUFFERS = 3;
+    private static final long AUTOPILOT_BUDGET_NANOS = 10_000_000L; // Half a tick
+    private static final int AUTOPILOT_STATUS_TICKS = 50; // Refresh the overlay's search stats every second
+    private static final int DEMO_RESTART_TICKS = 100; // Game over screen shown for 2 s in demo mode
+    private static final int INPUT_CAPACITY = 64;
+
+    private GameSimulation simulation;
+    private GameRenderer renderer;
+    private BufferStrategy strategy;
+    private boolean vsync;
+    private Dimension logicalSize; // null when drawing straight at window size
+    private LogicalFramebuffer framebuffer;
+    private GameLoop loop;
+    private Replay replay;
+    private File replayDir;
+    private FrameProfiler profiler;
+    private Autopilot autopilot; // null unless playing itself
+    private StateBroadcaster broadcaster; // null unless streaming
+    private HighScoreStore scores; // null when not keeping scores
+    private int bestScore;
+    private boolean scoreSaved; // This game's score is already queued
+    private final InputQueue inputs = new InputQueue(INPUT_CAPACITY); // Key presses, EDT to game loop
+    private final long[] unpresented = new long[INPUT_CAPACITY]; // Applied inputs not yet on screen
+    private int unpresentedCount;
+    private long nextSeed; // The game after this one
+    private int autopilotTicks;
+    private int gameOverTicks;
 
     public FlappyBird() {
-        // Get screen dimensions
+        // The window is the world's shape, as large as fits in SCALE_FACTOR of the screen
         Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
-        width = (int) (screenSize.width * SCALE_FACTOR);
-        height = (int) (screenSize.height * SCALE_FACTOR);
+        Dimension window = fit(GameSimulation.WORLD_WIDTH, GameSimulation.WORLD_HEIGHT,
+                (int) (screenSize.width * SCALE_FACTOR), (int) (screenSize.height * SCALE_FACTOR));
+        Dimension frame = window;
+
+        // -Dflappy.resolution=800x600 draws every frame at that size and stretches it to a window of
+        // the same shape
+        String resolution = System.getProperty("flappy.resolution");
+        if (resolution != null) {
+            logicalSize = LogicalFramebuffer.parseSize(resolution);
+            window = fit(logicalSize.width, logicalSize.height, window.width, window.height);
+            frame = logicalSize;
+        }
 
-        // Calculate scale factor based on reference dimensions (800x600)
-        scale = Math.min(width / 800.0, height / 600.0);
+        // -Dflappy.seed replays a known course; -Dflappy.replays=<dir> saves every finished game
+        long seed = Long.getLong("flappy.seed", ThreadLocalRandom.current().nextLong());
+        String replays = System.getProperty("flappy.replays");
+        replayDir = replays == null ? null : new File(replays);
+        simulation = new GameSimulation(true, seed);
+        // -Dflappy.collision=CIRCLE hits exactly when the drawn bird touches a drawn pipe
+        String collision = System.getProperty("flappy.collision");
+        if (collision != null) {
+            simulation.setCollisionMode(CollisionMode.valueOf(collision.toUpperCase()));
+        }
+        // Reachable courses; -Dflappy.course=RANDOM brings back independent gaps, including ones no
+        // bird can reach
+        String course = System.getProperty("flappy.course", CourseMode.REACHABLE.name());
+        simulation.setCourseMode(CourseMode.valueOf(course.toUpperCase()));
+        simulation.reset(seed);
+        replay = new Replay(seed, simulation.getWidth(), simulation.getHeight(), simulation.getCollisionMode(),
+                simulation.getCourseMode());
+        prepareNextGame();
+
+        // F3 shows frame timings; -Dflappy.metrics=<file> also appends them as JSON lines every second
+        profiler = new FrameProfiler();
+        String metrics = System.getProperty("flappy.metrics");
+        if (metrics != null) {
+            try {
+                profiler.exportTo(metrics);
+            } catch (IOException ex) {
+                System.err.println("Could not open metrics file " + metrics + ": " + ex.getMessage());
+            }
+        }
+        simulation.setProfiler(profiler);
+        renderer = new GameRenderer(simulation, frame.width, frame.height, profiler);
+        openScores();
 
-        setPreferredSize(new Dimension(width, height));
+        setPreferredSize(window);
         setBackground(new Color(135, 206, 235));
+        setIgnoreRepaint(true); // Every frame comes from render()
         setFocusable(true);
         addKeyListener(this);
-
-        bird = new Bird(width / 4, height / 2, scale);
-        pipes = new ArrayList<>();
-        clouds = new ArrayList<>();
-        scorePopups = new ArrayList<>();
-        random = new Random();
-        gameOver = false;
-        score = 0;
-        level = 1;
-        pipeSpeed = INITIAL_PIPE_SPEED * scale;
-        pipeSpacing = width * INITIAL_PIPE_SPACING_RATIO;
-        groundOffset = 0;
-        parallaxOffset = 0;
-        levelUpTimer = 0;
-
-        // Add initial clouds
-        for (int i = 0; i < 5; i++) {
-            clouds.add(new Cloud(random.nextInt(width), random.nextInt(height / 3), scale));
-        }
-
-        timer = new Timer(DELAY, this);
-        timer.start();
-
-        // Add initial pipes
-        addPipe();
     }
 
-    private void addPipe() {
-        int pipeGap = (int) (height * PIPE_GAP_RATIO);
-        int groundHeight = (int) (this.height * GROUND_HEIGHT_RATIO);
-
-        // Calculate a random position for the top of the gap (gapY)
-        double minY = 50 * scale; // Minimum y for the top of the gap
-        double maxY = this.height - groundHeight - pipeGap - (50 * scale); // Maximum y for the top of the gap
-        double gapY = minY + random.nextDouble() * (maxY - minY);
-
-        // Add a single Pipe object representing the top and bottom pipe with a gap
-        pipes.add(new Pipe(width, gapY, Pipe.PIPE_WIDTH * scale, pipeGap, pipeSpeed, this.height, groundHeight));
+    // Finished games go to a high-score log in the home directory; -Dflappy.scores=<file> picks
+    // another and -Dflappy.scores=none keeps nothing
+    private void openScores() {
+        String path = System.getProperty("flappy.scores",
+                new File(System.getProperty("user.home"), ".flappy-bird-scores").getPath());
+        if ("none".equalsIgnoreCase(path)) {
+            return;
+        }
+        try {
+            scores = new HighScoreStore(new File(path));
+        } catch (IOException ex) {
+            System.err.println("Could not open high scores " + path + ": " + ex.getMessage());
+            return;
+        }
+        bestScore = scores.getBestScore();
+        renderer.setBestScore(bestScore);
+        // Games still queued at exit are written before the JVM goes
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                scores.close();
+            } catch (IOException ex) {
+                System.err.println("Could not close high scores: " + ex.getMessage());
+            }
+        }, "high-scores-close"));
     }
 
-    private void levelUp() {
-        level++;
-        pipeSpeed += SPEED_INCREASE * scale;
-        pipeSpacing = Math.max(width * 0.2, width * INITIAL_PIPE_SPACING_RATIO - (level - 1) * 20 * scale);
-        levelUpTimer = 60;
+    // The largest size of the given shape that fits in maxWidth x maxHeight
+    private static Dimension fit(int width, int height, int maxWidth, int maxHeight) {
+        double s = Math.min((double) maxWidth / width, (double) maxHeight / height);
+        return new Dimension((int) Math.round(width * s), (int) Math.round(height * s));
     }
 
-    @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        Graphics2D g2d = (Graphics2D) g;
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-        // Draw clouds with parallax
-        for (Cloud cloud : clouds) {
-            cloud.draw(g2d);
+    // Needs the canvas on screen, since that is when a BufferStrategy can be created.
+    // -Dflappy.buffers picks double or triple buffering; -Dflappy.vsync=false stops waiting on
+    // the display after each frame.
+    public void start() {
+        int buffers = Math.max(MIN_BUFFERS, Math.min(MAX_BUFFERS, Integer.getInteger("flappy.buffers", MIN_BUFFERS)));
+        vsync = !"false".equalsIgnoreCase(System.getProperty("flappy.vsync"));
+        createStrategy(buffers);
+        if (logicalSize != null) {
+            framebuffer = new LogicalFramebuffer(logicalSize.width, logicalSize.height, getGraphicsConfiguration());
         }
-
-        // Draw pipes
-        for (Pipe pipe : pipes) {
-            pipe.draw(g2d);
+        requestFocus();
+
+        String rendering = String.format("%s, %d buffers, %s, vsync %s",
+                RenderPipeline.describe(getGraphicsConfiguration()), buffers,
+                strategy.getCapabilities().isPageFlipping() ? "page flipping" : "blit",
+                vsync ? "on" : "off");
+        if (logicalSize != null) {
+            rendering += String.format(", %dx%d scaled to %dx%d",
+                    logicalSize.width, logicalSize.height, getWidth(), getHeight());
         }
-
-        // Draw ground
-        drawGround(g2d);
-
-        // Draw bird
-        bird.draw(g2d);
-
-        // Draw score popups
-        for (ScorePopup popup : scorePopups) {
-            popup.draw(g2d);
+        System.out.println("Rendering: " + rendering);
+        profiler.setHeader(rendering);
+
+        // Physics stays at 1000 / DELAY ticks per second; frames follow the display (or -Dflappy.fps)
+        loop = new GameLoop(simulation, this::render, 1000 / DELAY, Integer.getInteger("flappy.fps", refreshRate()));
+        // -Dflappy.autopilot=<threads> lets the lookahead bot play, restarting after every game
+        Integer threads = Integer.getInteger("flappy.autopilot");
+        if (threads != null) {
+            autopilot = new Autopilot(simulation.getWidth(), simulation.getHeight(), threads,
+                    AUTOPILOT_BUDGET_NANOS, Autopilot.DEFAULT_HORIZON);
         }
-
-        // Draw score and level
-        g2d.setColor(Color.WHITE);
-        g2d.setFont(new Font("Arial", Font.BOLD, (int) (20 * scale)));
-        g2d.drawString("Score: " + score, (int) (20 * scale), (int) (30 * scale));
-        g2d.drawString("Level: " + level, (int) (20 * scale), (int) (60 * scale));
-
-        // Draw level up message
-        if (levelUpTimer > 0) {
-            g2d.setColor(new Color(255, 255, 255, levelUpTimer * 4));
-            g2d.setFont(new Font("Arial", Font.BOLD, (int) (40 * scale)));
-            String levelUpText = "Level " + level + "!";
-            FontMetrics fm = g2d.getFontMetrics();
-            int textWidth = fm.stringWidth(levelUpText);
-            g2d.drawString(levelUpText, width / 2 - textWidth / 2, height / 2);
-            levelUpTimer--;
+        // -Dflappy.stream=<port> lets Spectator windows watch the game (java Spectator <host> <port>)
+        Integer streamPort = Integer.getInteger("flappy.stream");
+        if (streamPort != null) {
+            try {
+                broadcaster = new StateBroadcaster(streamPort);
+                System.out.println("Streaming on port " + broadcaster.getPort());
+            } catch (IOException ex) {
+                System.err.println("Could not stream on port " + streamPort + ": " + ex.getMessage());
+            }
         }
+        loop.setBeforeTick(this::beforeTick);
+        loop.setAfterTick(this::afterTick);
+        loop.start();
+    }
 
-        if (gameOver) {
-            g2d.setColor(new Color(0, 0, 0, 150));
-            g2d.fillRect(0, 0, width, height);
-            g2d.setColor(Color.WHITE);
-            g2d.setFont(new Font("Arial", Font.BOLD, (int) (40 * scale)));
-            String gameOverText = "Game Over!";
-            FontMetrics fm = g2d.getFontMetrics();
-            int textWidth = fm.stringWidth(gameOverText);
-            g2d.drawString(gameOverText, width / 2 - textWidth / 2, height / 2);
-
-            g2d.setFont(new Font("Arial", Font.BOLD, (int) (20 * scale)));
-            String restartText = "Press SPACE to restart";
-            textWidth = g2d.getFontMetrics().stringWidth(restartText);
-            g2d.drawString(restartText, width / 2 - textWidth / 2, height / 2 + (int) (40 * scale));
-
-            String levelText = "Final Level: " + level;
-            textWidth = g2d.getFontMetrics().stringWidth(levelText);
-            g2d.drawString(levelText, width / 2 - textWidth / 2, height / 2 + (int) (80 * scale));
+    // Ask for accelerated buffers first; pipelines that cannot provide them get whatever
+    // Canvas would choose on its own (usually a blit from a software back buffer)
+    private void createStrategy(int buffers) {
+        ImageCapabilities accelerated = new ImageCapabilities(true);
+        try {
+            createBufferStrategy(buffers, new BufferCapabilities(accelerated, accelerated,
+                    BufferCapabilities.FlipContents.UNDEFINED));
+        } catch (AWTException ex) {
+            createBufferStrategy(buffers);
         }
+        strategy = getBufferStrategy();
     }
 
-    private void drawGround(Graphics2D g) {
-        int groundHeight = (int) (height * GROUND_HEIGHT_RATIO);
-
-        // Draw ground base with gradient
-        GradientPaint groundGradient = new GradientPaint(
-                0, height - groundHeight,
-                new Color(139, 69, 19),
-                0, height,
-                new Color(101, 67, 33));
-        g.setPaint(groundGradient);
-        g.fillRect(0, height - groundHeight, width, groundHeight);
-
-        // Draw grass with smooth wave animation
-        g.setColor(new Color(34, 139, 34));
-        for (int i = 0; i < width; i += 2) {
-            double wave = Math.sin((i + groundOffset) * 0.05) * (8 * scale);
-            g.fillRect(i, height - groundHeight, 2, (int) (25 * scale) + (int) wave);
+    private static int refreshRate() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return DEFAULT_FPS;
         }
-
-        // Draw ground shadow
-        g.setColor(new Color(0, 0, 0, 40));
-        g.fillRect(0, height - groundHeight, width, (int) (8 * scale));
+        int rate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDisplayMode().getRefreshRate();
+        return rate == DisplayMode.REFRESH_RATE_UNKNOWN ? DEFAULT_FPS : rate;
     }
 
-    @Override
-    public void actionPerformed(ActionEvent e) {
-        if (!gameOver) {
-            bird.update();
-
-            // Update clouds with parallax
-            parallaxOffset += 0.3 * scale;
-            for (Cloud cloud : clouds) {
-                cloud.update();
-                if (cloud.getX() > width) {
-                    cloud.reset(width);
+    // Runs on the game loop thread. Buffer contents can be lost (e.g. when the display mode
+    // changes), in which case the frame is drawn again.
+    private void render() {
+        do {
+            do {
+                Graphics2D g2d = (Graphics2D) strategy.getDrawGraphics();
+                try {
+                    // The game loop thread ticks the simulation; hold it still while we read it
+                    synchronized (simulation) {
+                        profiler.beginFrame();
+
+                        // Nothing moves once the game is over, so stop interpolating
+                        double alpha = simulation.isGameOver() ? 1.0 : loop.getAlpha();
+                        if (framebuffer == null) {
+                            renderer.render(g2d, simulation, alpha);
+                        } else {
+                            renderLogical(g2d, alpha);
+                        }
+                        profiler.endFrame();
+                        // The overlay stays sharp at window resolution
+                        double scale = Math.min((double) getWidth() / GameSimulation.WORLD_WIDTH,
+                                (double) getHeight() / GameSimulation.WORLD_HEIGHT);
+                        profiler.drawOverlay(g2d, (int) (10 * scale), (int) (80 * scale));
+                    }
+                } finally {
+                    g2d.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        if (vsync) {
+            // Flush the pipeline so the frame reaches the display now rather than being queued
+            // behind later ones (on X11 this is also what keeps motion smooth)
+            Toolkit.getDefaultToolkit().sync();
+        }
+        if (unpresentedCount > 0) {
+            long now = System.nanoTime();
+            synchronized (simulation) {
+                for (int i = 0; i < unpresentedCount; i++) {
+                    profiler.inputPresented(unpresented[i], now);
                 }
             }
+            unpresentedCount = 0;
+        }
+    }
 
-            // Update ground offset
-            groundOffset += 0.5 * scale;
+    private void renderLogical(Graphics2D g2d, double alpha) {
+        do {
+            Graphics2D frame = framebuffer.createGraphics();
+            try {
+                renderer.render(frame, simulation, alpha);
+            } finally {
+                frame.dispose();
+            }
+        } while (framebuffer.contentsLost());
+        long t = profiler.start();
+        framebuffer.drawScaled(g2d, getWidth(), getHeight());
+        profiler.lap(FrameProfiler.PAINT_UPSCALE, t);
+    }
 
-            // Update pipes
-            for (int i = pipes.size() - 1; i >= 0; i--) {
-                Pipe pipe = pipes.get(i);
-                pipe.update();
+    // Runs on the game loop thread before each tick
+    private void beforeTick() {
+        applyInputs();
+        if (autopilot != null) {
+            autopilotStep();
+        }
+    }
 
-                // Remove pipes that are off screen
-                if (pipe.getX() + pipe.getWidth() < 0) {
-                    pipes.remove(i);
+    // Key presses take effect at the tick boundary after they arrive, in the order they arrived,
+    // so a game plays the same however its presses fell between ticks
+    private void applyInputs() {
+        if (!inputs.poll()) {
+            return;
+        }
+        synchronized (simulation) {
+            long now = System.nanoTime();
+            do {
+                if (simulation.isGameOver()) {
+                    restart();
+                } else {
+                    replay.recordJump(simulation.getTick());
+                    simulation.jump();
                 }
-
-                // Check collision with both top and bottom pipe sections
-                if (bird.getBounds().intersects(pipe.getBoundsTop())
-                        || bird.getBounds().intersects(pipe.getBoundsBottom())) {
-                    gameOver = true;
+                profiler.inputApplied(inputs.time(), now);
+                // Frames can fall behind for many ticks; past the buffer only the oldest presses
+                // are timed to the screen, and they are the slowest to get there
+                if (unpresentedCount < unpresented.length) {
+                    unpresented[unpresentedCount++] = inputs.time();
                 }
+            } while (inputs.poll());
+        }
+    }
 
-                // Score point when passing pipe
-                if (!pipe.isPassed() && pipe.getX() + pipe.getWidth() < bird.getX()) {
-                    pipe.setPassed(true);
-                    score++;
-
-                    // Check for level up
-                    if (score > 0 && score % LEVEL_UP_SCORE == 0) {
-                        levelUp();
-                    }
-
-                    // Add score popup at the center of the gap
-                    scorePopups.add(new ScorePopup(pipe.getX() + pipe.getWidth() / 2,
-                            pipe.getGapY() + pipe.getGapHeight() / 2, scale));
+    // The search itself runs without the lock so frames keep coming while it thinks
+    private void autopilotStep() {
+        boolean jump = autopilot.decide(simulation);
+        synchronized (simulation) {
+            if (simulation.isGameOver()) {
+                if (++gameOverTicks >= DEMO_RESTART_TICKS) {
+                    gameOverTicks = 0;
+                    restart();
                 }
+            } else if (jump) {
+                replay.recordJump(simulation.getTick());
+                simulation.jump();
             }
+        }
+        if (++autopilotTicks % AUTOPILOT_STATUS_TICKS == 0) {
+            profiler.setStatus(autopilot.summary());
+            autopilot.resetStats();
+        }
+    }
 
-            // Update score popups
-            for (int i = scorePopups.size() - 1; i >= 0; i--) {
-                ScorePopup popup = scorePopups.get(i);
-                popup.update();
-                if (popup.isDead()) {
-                    scorePopups.remove(i);
+    // Runs on the game loop thread after each tick
+    private void afterTick() {
+        if (broadcaster != null) {
+            broadcaster.publish(simulation);
+        }
+        if (scores != null) {
+            synchronized (simulation) {
+                if (simulation.isGameOver() && !scoreSaved) {
+                    scoreSaved = true;
+                    scores.submit(simulation);
+                    bestScore = Math.max(bestScore, simulation.getScore());
+                    renderer.setBestScore(bestScore);
                 }
             }
-
-            // Add new pipes
-            if (pipes.size() == 0 || pipes.get(pipes.size() - 1).getX() < width - pipeSpacing) {
-                addPipe();
-            }
-
-            // Check if bird hits the ground or ceiling
-            if (bird.getY() <= 0 || bird.getY() >= height - (height * GROUND_HEIGHT_RATIO)) {
-                gameOver = true;
-            }
         }
-        repaint();
     }
 
     @Override
     public void keyPressed(KeyEvent e) {
-        if (e.getKeyCode() == KeyEvent.VK_SPACE) {
-            if (gameOver) {
-                // Reset game
-                bird = new Bird(width / 4, height / 2, scale);
-                pipes.clear();
-                scorePopups.clear();
-                gameOver = false;
-                score = 0;
-                level = 1;
-                pipeSpeed = INITIAL_PIPE_SPEED * scale;
-                pipeSpacing = width * INITIAL_PIPE_SPACING_RATIO;
-                addPipe();
-            } else {
-                bird.jump();
+        if (e.getKeyCode() == KeyEvent.VK_F3) {
+            synchronized (simulation) {
+                profiler.toggleOverlay();
             }
+        } else if (e.getKeyCode() == KeyEvent.VK_SPACE) {
+            // The game loop applies it; presses are only dropped if it has stalled for a whole queue
+            inputs.offer(InputQueue.JUMP, System.nanoTime());
+        }
+    }
+
+    // Caller holds the simulation's lock
+    private void restart() {
+        saveReplay();
+
+        // Reset game
+        long seed = nextSeed;
+        simulation.reset(seed);
+        scoreSaved = false;
+        replay = new Replay(seed, simulation.getWidth(), simulation.getHeight(), simulation.getCollisionMode(),
+                simulation.getCourseMode());
+        prepareNextGame();
+    }
+
+    // The next game's course is worked out while this one is played, so restarting on the game
+    // loop thread never waits for it
+    private void prepareNextGame() {
+        nextSeed = ThreadLocalRandom.current().nextLong();
+        simulation.prepareCourse(nextSeed);
+    }
+
+    private void saveReplay() {
+        if (replayDir == null) {
+            return;
+        }
+        replay.finish(simulation.getTick(), simulation.getScore());
+        File file = new File(replayDir, String.format("%016x.fbr", replay.getSeed()));
+        try {
+            replayDir.mkdirs();
+            replay.save(file);
+        } catch (IOException ex) {
+            System.err.println("Could not save replay " + file + ": " + ex.getMessage());
         }
     }
 
@@ -283,48 +382,17 @@ public class FlappyBird extends JPanel implements ActionListener, KeyListener {
     }
 
     public static void main(String[] args) {
+        // -Dflappy.pipeline=opengl|xrender|software; must happen before anything touches AWT
+        RenderPipeline.select(System.getProperty("flappy.pipeline", "default"));
+
         JFrame frame = new JFrame("Flappy Bird");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setResizable(false);
-        frame.add(new FlappyBird());
+        FlappyBird game = new FlappyBird();
+        frame.add(game);
         frame.pack();
         frame.setLocationRelativeTo(null);
         frame.setVisible(true);
+        game.start();
     }
 }
-
-class ScorePopup {
-    private double x, y;
-    private double vy;
-    private int life;
-    private static final int MAX_LIFE = 30;
-    private double scale;
-
-    public ScorePopup(double x, double y, double scale) {
-        this.x = x;
-        this.y = y;
-        this.vy = -2;
-        this.life = MAX_LIFE;
-        this.scale = scale;
-    }
-
-    public void update() {
-        y += vy;
-        vy += 0.1;
-        life--;
-    }
-
-    public void draw(Graphics2D g) {
-        float alpha = (float) life / MAX_LIFE;
-        g.setColor(new Color(255, 255, 255, (int) (alpha * 255)));
-        g.setFont(new Font("Arial", Font.BOLD, (int) (20 * scale)));
-        String text = "+1";
-        FontMetrics fm = g.getFontMetrics();
-        int textWidth = fm.stringWidth(text);
-        g.drawString(text, (int) x - textWidth / 2, (int) y);
-    }
-
-    public boolean isDead() {
-        return life <= 0;
-    }
-}
\ No newline at end of file
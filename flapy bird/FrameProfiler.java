@@ -0,0 +1,378 @@
+import java.awt.*;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+
+// Where the time of a tick and a frame goes. Code under measurement chains lap() calls through
+// its phases; whole ticks and frames are bracketed by begin/end calls that also count the bytes
+// the calling thread allocated. Once a second the window is summarised (percentiles of frame
+// interval, paint and tick time, mean time per phase, allocations and GC activity) for the debug
+// overlay and, when a metrics file is set, appended to it as one JSON line.
+//
+// Inputs are timed from the moment they are received to the tick that applies them and to the
+// first frame shown after it. A second holds only a few presses, so the overlay reports inputs
+// since it was opened; the JSON lines still cover one second each.
+//
+// Ticks, frames and inputs are all recorded on the game loop thread, but the overlay is toggled
+// from the EDT. Every call but setStatus() is made under the simulation's lock, which is what
+// keeps this class consistent.
+public class FrameProfiler {
+    // Tick phases, timed in GameSimulation.tick()
+    public static final int BIRD_UPDATE = 0;
+    public static final int CLOUD_UPDATE = 1;
+    public static final int PIPE_UPDATE = 2; // Moving, scoring, recycling and collision
+    public static final int POPUP_UPDATE = 3;
+    // Paint passes, timed in GameRenderer.render()
+    public static final int PAINT_CLOUDS = 4;
+    public static final int PAINT_PIPES = 5;
+    public static final int PAINT_GROUND = 6;
+    public static final int PAINT_BIRD = 7;
+    public static final int PAINT_POPUPS = 8;
+    public static final int PAINT_HUD = 9;
+    public static final int PAINT_UPSCALE = 10; // Logical framebuffer to window, timed in FlappyBird
+
+    private static final String[] PHASE_NAMES = {
+            "birdUpdate", "cloudUpdate", "pipeUpdate", "popupUpdate",
+            "paintClouds", "paintPipes", "paintGround", "paintBird", "paintPopups", "paintHud",
+            "paintUpscale"
+    };
+    private static final int FIRST_PAINT_PHASE = PAINT_CLOUDS;
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    private static final Color OVERLAY_BACKGROUND = new Color(0, 0, 0, 170);
+
+    // Never enabled; lets code call the profiler unconditionally when nobody is watching
+    public static final FrameProfiler DISABLED = new FrameProfiler();
+
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocationCounter();
+
+    private boolean enabled;
+    private boolean overlayVisible;
+    private Writer metrics;
+
+    private final long[] phaseNanos = new long[PHASE_NAMES.length];
+    private final LatencyHistogram frameIntervals = new LatencyHistogram();
+    private final LatencyHistogram paintTimes = new LatencyHistogram();
+    private final LatencyHistogram tickTimes = new LatencyHistogram();
+    private final LatencyHistogram inputToTick = new LatencyHistogram();
+    private final LatencyHistogram inputToPresent = new LatencyHistogram();
+    private final LatencyHistogram inputToTickShown = new LatencyHistogram(); // Since the overlay opened
+    private final LatencyHistogram inputToPresentShown = new LatencyHistogram();
+    private long ticks;
+    private long frames;
+    private long tickAllocated;
+    private long frameAllocated;
+    private long tickStart;
+    private long tickAllocStart;
+    private long frameStart;
+    private long frameAllocStart;
+    private long lastFrameStart;
+    private long windowStart;
+    private long gcCountStart;
+    private long gcMillisStart;
+
+    private String header; // Shown above the timings, e.g. the rendering setup
+    private volatile String status; // Shown under the header, e.g. the autopilot's search rate
+    private String[] overlayLines = {"Collecting..."};
+    private Font overlayFont;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Stream one JSON line per window to path (appending); the profiler stays enabled from now on
+    public void exportTo(String path) throws IOException {
+        metrics = new BufferedWriter(new FileWriter(path, true));
+        updateEnabled();
+    }
+
+    public void setHeader(String header) {
+        this.header = header;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public void toggleOverlay() {
+        overlayVisible = !overlayVisible;
+        if (overlayVisible) {
+            inputToTickShown.reset();
+            inputToPresentShown.reset();
+        }
+        updateEnabled();
+    }
+
+    private void updateEnabled() {
+        boolean wasEnabled = enabled;
+        enabled = this != DISABLED && (overlayVisible || metrics != null);
+        if (enabled && !wasEnabled) {
+            startWindow(System.nanoTime());
+            lastFrameStart = 0;
+        }
+    }
+
+    // Returns a timestamp to pass to the first lap(); 0 when disabled
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    // Charge the time since `since` to phase and return the new timestamp for the next lap
+    public long lap(int phase, long since) {
+        if (!enabled) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        phaseNanos[phase] += now - since;
+        return now;
+    }
+
+    public void beginTick() {
+        if (enabled) {
+            tickAllocStart = allocatedBytes();
+            tickStart = System.nanoTime();
+        }
+    }
+
+    public void endTick() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        tickTimes.record(now - tickStart);
+        tickAllocated += allocatedBytes() - tickAllocStart;
+        ticks++;
+        maybeFinishWindow(now);
+    }
+
+    // receivedNanos is when the input arrived, in System.nanoTime(); call when a tick applies it
+    public void inputApplied(long receivedNanos, long now) {
+        if (enabled) {
+            inputToTick.record(now - receivedNanos);
+        }
+    }
+
+    // Call once the first frame showing the input's effect has been presented
+    public void inputPresented(long receivedNanos, long now) {
+        if (enabled) {
+            inputToPresent.record(now - receivedNanos);
+        }
+    }
+
+    public void beginFrame() {
+        if (!enabled) {
+            return;
+        }
+        frameAllocStart = allocatedBytes();
+        frameStart = System.nanoTime();
+        if (lastFrameStart != 0) {
+            frameIntervals.record(frameStart - lastFrameStart);
+        }
+        lastFrameStart = frameStart;
+    }
+
+    public void endFrame() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        paintTimes.record(now - frameStart);
+        frameAllocated += allocatedBytes() - frameAllocStart;
+        frames++;
+        maybeFinishWindow(now);
+    }
+
+    private void maybeFinishWindow(long now) {
+        long elapsed = now - windowStart;
+        if (elapsed < WINDOW_NANOS) {
+            return;
+        }
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean gc : garbageCollectors()) {
+            gcCount += Math.max(gc.getCollectionCount(), 0);
+            gcMillis += Math.max(gc.getCollectionTime(), 0);
+        }
+        gcCount -= gcCountStart;
+        gcMillis -= gcMillisStart;
+
+        inputToTickShown.add(inputToTick);
+        inputToPresentShown.add(inputToPresent);
+
+        double fps = frames * 1e9 / elapsed;
+        overlayLines = new String[] {
+                String.format("%.0f fps, %.0f ticks/s", fps, ticks * 1e9 / elapsed),
+                "frame  " + percentiles(frameIntervals),
+                "paint  " + percentiles(paintTimes),
+                "tick   " + percentiles(tickTimes),
+                inputLine(),
+                phaseLine(0, FIRST_PAINT_PHASE, ticks, "per tick (us)"),
+                phaseLine(FIRST_PAINT_PHASE, PHASE_NAMES.length, frames, "per frame (us)"),
+                String.format("alloc %s/tick %s/frame, gc %d (%d ms)",
+                        bytes(perEvent(tickAllocated, ticks)), bytes(perEvent(frameAllocated, frames)),
+                        gcCount, gcMillis),
+        };
+        if (metrics != null) {
+            writeMetrics(fps, gcCount, gcMillis);
+        }
+        startWindow(now);
+    }
+
+    private void writeMetrics(double fps, long gcCount, long gcMillis) {
+        StringBuilder json = new StringBuilder(512);
+        json.append("{\"time\":").append(System.currentTimeMillis())
+                .append(",\"ticks\":").append(ticks)
+                .append(",\"frames\":").append(frames)
+                .append(",\"fps\":").append(Math.round(fps * 10) / 10.0);
+        appendHistogram(json, "frameIntervalNs", frameIntervals);
+        appendHistogram(json, "paintNs", paintTimes);
+        appendHistogram(json, "tickNs", tickTimes);
+        appendHistogram(json, "inputToTickNs", inputToTick);
+        appendHistogram(json, "inputToPresentNs", inputToPresent);
+        json.append(",\"phaseNs\":{");
+        for (int phase = 0; phase < PHASE_NAMES.length; phase++) {
+            long events = phase < FIRST_PAINT_PHASE ? ticks : frames;
+            json.append(phase == 0 ? "" : ",").append('"').append(PHASE_NAMES[phase]).append("\":")
+                    .append(perEvent(phaseNanos[phase], events));
+        }
+        json.append("},\"allocBytesPerTick\":").append(perEvent(tickAllocated, ticks))
+                .append(",\"allocBytesPerFrame\":").append(perEvent(frameAllocated, frames))
+                .append(",\"gcCount\":").append(gcCount)
+                .append(",\"gcMillis\":").append(gcMillis)
+                .append("}\n");
+        try {
+            metrics.write(json.toString());
+            metrics.flush();
+        } catch (IOException ex) {
+            System.err.println("Could not write metrics, stopping export: " + ex.getMessage());
+            try {
+                metrics.close();
+            } catch (IOException ignored) {
+                // Already failing
+            }
+            metrics = null;
+            updateEnabled();
+        }
+    }
+
+    private static void appendHistogram(StringBuilder json, String name, LatencyHistogram histogram) {
+        json.append(",\"").append(name).append("\":{\"count\":").append(histogram.getCount())
+                .append(",\"mean\":").append(Math.round(histogram.getMean()))
+                .append(",\"p50\":").append(histogram.getValueAtPercentile(50))
+                .append(",\"p90\":").append(histogram.getValueAtPercentile(90))
+                .append(",\"p99\":").append(histogram.getValueAtPercentile(99))
+                .append(",\"p999\":").append(histogram.getValueAtPercentile(99.9))
+                .append(",\"max\":").append(histogram.getMax())
+                .append('}');
+    }
+
+    private void startWindow(long now) {
+        windowStart = now;
+        ticks = 0;
+        frames = 0;
+        tickAllocated = 0;
+        frameAllocated = 0;
+        Arrays.fill(phaseNanos, 0);
+        frameIntervals.reset();
+        paintTimes.reset();
+        tickTimes.reset();
+        inputToTick.reset();
+        inputToPresent.reset();
+        gcCountStart = 0;
+        gcMillisStart = 0;
+        for (GarbageCollectorMXBean gc : garbageCollectors()) {
+            gcCountStart += Math.max(gc.getCollectionCount(), 0);
+            gcMillisStart += Math.max(gc.getCollectionTime(), 0);
+        }
+    }
+
+    // Top-left corner at (x, y); lines are only rebuilt once a window, so drawing is cheap
+    public void drawOverlay(Graphics2D g2d, int x, int y) {
+        if (!overlayVisible) {
+            return;
+        }
+        if (overlayFont == null) {
+            overlayFont = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+        }
+        g2d.setFont(overlayFont);
+        FontMetrics fm = g2d.getFontMetrics();
+        int lineHeight = fm.getHeight();
+        String status = this.status;
+        int first = (header == null ? 0 : 1) + (status == null ? 0 : 1);
+        int boxWidth = Math.max(header == null ? 0 : fm.stringWidth(header), status == null ? 0 : fm.stringWidth(status));
+        for (String line : overlayLines) {
+            boxWidth = Math.max(boxWidth, fm.stringWidth(line));
+        }
+        g2d.setColor(OVERLAY_BACKGROUND);
+        g2d.fillRect(x, y, boxWidth + 12, lineHeight * (first + overlayLines.length) + 8);
+        g2d.setColor(Color.GREEN);
+        if (header != null) {
+            g2d.drawString(header, x + 6, y + 4 + fm.getAscent());
+        }
+        if (status != null) {
+            g2d.drawString(status, x + 6, y + 4 + fm.getAscent() + (first - 1) * lineHeight);
+        }
+        for (int i = 0; i < overlayLines.length; i++) {
+            g2d.drawString(overlayLines[i], x + 6, y + 4 + fm.getAscent() + (first + i) * lineHeight);
+        }
+    }
+
+    private static String percentiles(LatencyHistogram histogram) {
+        return String.format("p50 %5.2f  p99 %5.2f  max %6.2f ms",
+                histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+                histogram.getMax() / 1e6);
+    }
+
+    private String inputLine() {
+        if (inputToTickShown.getCount() == 0) {
+            return "input  no presses yet";
+        }
+        return String.format("input  %d presses, to tick p50 %5.2f max %5.2f, to screen p50 %5.2f max %5.2f ms",
+                inputToTickShown.getCount(),
+                inputToTickShown.getValueAtPercentile(50) / 1e6, inputToTickShown.getMax() / 1e6,
+                inputToPresentShown.getValueAtPercentile(50) / 1e6, inputToPresentShown.getMax() / 1e6);
+    }
+
+    private String phaseLine(int from, int to, long events, String label) {
+        StringBuilder line = new StringBuilder();
+        for (int phase = from; phase < to; phase++) {
+            line.append(PHASE_NAMES[phase]).append(' ')
+                    .append(String.format("%.1f", perEvent(phaseNanos[phase], events) / 1e3)).append("  ");
+        }
+        return line.append(label).toString();
+    }
+
+    private static long perEvent(long total, long events) {
+        return events == 0 ? 0 : total / events;
+    }
+
+    private static String bytes(long bytes) {
+        return bytes < 10_000 ? bytes + " B" : (bytes / 1024) + " KB";
+    }
+
+    // Bytes allocated so far by the calling thread, or 0 where the JVM cannot tell
+    private static long allocatedBytes() {
+        return ALLOCATIONS == null ? 0 : ALLOCATIONS.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+            if (counter.isThreadAllocatedMemorySupported()) {
+                counter.setThreadAllocatedMemoryEnabled(true);
+                return counter;
+            }
+        }
+        return null;
+    }
+
+    private static List<GarbageCollectorMXBean> garbageCollectors() {
+        return ManagementFactory.getGarbageCollectorMXBeans();
+    }
+}
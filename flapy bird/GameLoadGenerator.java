@@ -0,0 +1,201 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.locks.LockSupport;
+
+// Load for GameServer: many connections, each playing game after game with GapFollowerAgent. Every
+// client runs its own copy of the game in step with the server, sends the jumps it makes, and
+// checks the server's OVER against the score and length of its copy; any difference is a desync.
+// All clients share one thread, ticking in a batch like a server shard.
+public class GameLoadGenerator {
+    private static final long TICK_NANOS = 1_000_000_000L / GameServer.TICK_RATE;
+    private static final double AGENT_TARGET = 0.6;
+
+    private final Selector selector;
+    private final Client[] clients;
+    private final LatencyHistogram resultLatency = new LatencyHistogram(); // Local game over to server OVER
+    private final LatencyHistogram batchTimes = new LatencyHistogram();
+    private final LatencyHistogram lag = new LatencyHistogram(); // Batch start past its schedule
+    private long games;
+    private long desyncs;
+    private int closedSessions; // Closed by the server, e.g. for sending too many jumps
+
+    private final class Client {
+        final int id;
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(64);
+        final ByteBuffer out = ByteBuffer.allocate(256);
+        final Agent agent = new GapFollowerAgent(AGENT_TARGET);
+        GameSimulation simulation;
+        int gamesStarted;
+        long localOverNanos; // 0 while the local copy is still playing
+        int serverScore = -1; // From OVER, once it arrives
+        int serverTicks;
+        boolean closed;
+
+        Client(int id, SocketChannel channel) {
+            this.id = id;
+            this.channel = channel;
+        }
+
+        void join() {
+            long seed = ((long) id << 32) | gamesStarted++;
+            if (simulation == null) {
+                simulation = new GameSimulation(false, seed);
+            } else {
+                simulation.reset(seed);
+            }
+            localOverNanos = 0;
+            serverScore = -1;
+            out.put(GameServer.JOIN).putLong(seed);
+        }
+
+        void tick(long now) {
+            if (closed || localOverNanos != 0) {
+                return;
+            }
+            if (Agent.decide(agent, simulation)) {
+                out.put(GameServer.JUMP).putInt((int) simulation.getTick());
+                simulation.jump();
+            }
+            simulation.tick();
+            if (simulation.isGameOver()) {
+                localOverNanos = now;
+                finishIfBothDone(now);
+            }
+        }
+
+        // The server's OVER can come before the local copy ends when this thread falls behind
+        void finishIfBothDone(long now) {
+            if (localOverNanos == 0 || serverScore < 0) {
+                return;
+            }
+            if (gamesStarted > 1) {
+                resultLatency.record(now - localOverNanos); // First games start while both JVMs warm up
+            }
+            games++;
+            if (serverScore != simulation.getScore() || serverTicks != simulation.getTick()) {
+                desyncs++;
+            }
+            join();
+        }
+    }
+
+    public GameLoadGenerator(String host, int port, int sessions) throws IOException {
+        selector = Selector.open();
+        clients = new Client[sessions];
+        for (int i = 0; i < sessions; i++) {
+            SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.configureBlocking(false);
+            clients[i] = new Client(i, channel);
+            channel.register(selector, SelectionKey.OP_READ, clients[i]);
+        }
+    }
+
+    // Plays for the given time, printing a summary every second
+    public void run(long nanos) throws IOException {
+        long start = System.nanoTime();
+        for (Client client : clients) {
+            client.join();
+            flush(client);
+        }
+        long next = start;
+        long nextReport = start + 1_000_000_000L;
+        while (System.nanoTime() - start < nanos) {
+            long now = System.nanoTime();
+            if (now - next >= 0) {
+                for (Client client : clients) {
+                    client.tick(now);
+                    if (!client.closed) {
+                        flush(client);
+                    }
+                }
+                batchTimes.record(System.nanoTime() - now);
+                lag.record(now - next);
+                next += TICK_NANOS;
+            }
+            if (now - nextReport >= 0) {
+                System.out.println(summary());
+                nextReport += 1_000_000_000L;
+            }
+            long wait = Math.min(next, nextReport) - System.nanoTime();
+            if (wait > 0) {
+                selector.select(Math.max(1, wait / 1_000_000));
+            } else {
+                selector.selectNow();
+            }
+            read();
+        }
+        System.out.println(summary());
+        for (Client client : clients) {
+            client.channel.close();
+        }
+    }
+
+    private void read() throws IOException {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            Client client = (Client) key.attachment();
+            if (client.channel.read(client.in) < 0) {
+                // Keep playing the other sessions; the summary counts this one
+                client.closed = true;
+                closedSessions++;
+                client.channel.close();
+                continue;
+            }
+            client.in.flip();
+            while (client.in.remaining() >= GameServer.OVER_BYTES) {
+                if (client.in.get() != GameServer.OVER) {
+                    throw new IOException("Unexpected message for session " + client.id);
+                }
+                client.serverScore = client.in.getInt();
+                client.serverTicks = client.in.getInt();
+                client.finishIfBothDone(System.nanoTime());
+                flush(client);
+            }
+            client.in.compact();
+        }
+    }
+
+    // A few bytes a tick at most, which a local socket always takes at once
+    private static void flush(Client client) throws IOException {
+        client.out.flip();
+        while (client.out.hasRemaining()) {
+            if (client.channel.write(client.out) == 0) {
+                LockSupport.parkNanos(100_000);
+            }
+        }
+        client.out.clear();
+    }
+
+    private String summary() {
+        String line = String.format("%d sessions (%d closed by the server), %d games, %d desyncs, "
+                        + "result latency p50 %.1f p99 %.1f ms "
+                        + "(includes %d ms input delay), client batch p99 %.2f ms, lag p99 %.1f ms",
+                clients.length, closedSessions, games, desyncs, resultLatency.getValueAtPercentile(50) / 1e6,
+                resultLatency.getValueAtPercentile(99) / 1e6,
+                GameServer.INPUT_DELAY_TICKS * TICK_NANOS / 1_000_000, batchTimes.getValueAtPercentile(99) / 1e6,
+                lag.getValueAtPercentile(99) / 1e6);
+        resultLatency.reset();
+        batchTimes.reset();
+        lag.reset();
+        return line;
+    }
+
+    // java GameLoadGenerator [sessions] [seconds] [port]; start GameServer first
+    public static void main(String[] args) throws IOException {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : GameServer.DEFAULT_PORT;
+        GameLoadGenerator generator = new GameLoadGenerator("localhost", port, sessions);
+        generator.run(seconds * 1_000_000_000L);
+    }
+}
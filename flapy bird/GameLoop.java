@@ -0,0 +1,93 @@
+import java.util.concurrent.locks.LockSupport;
+
+// Fixed-timestep loop: physics always advances in whole steps of 1/tickRate seconds,
+// while frames are requested at targetFps with the leftover fraction exposed as alpha
+public class GameLoop implements Runnable {
+    private static final long MAX_CATCH_UP_NANOS = 250_000_000L; // Drop time after long stalls
+
+    private final GameSimulation simulation;
+    private final Runnable renderer;
+    private Runnable beforeTick = () -> { };
+    private Runnable afterTick = () -> { };
+    private final long stepNanos;
+    private final long frameNanos;
+    private volatile boolean running;
+    private volatile double alpha;
+    private Thread thread;
+
+    public GameLoop(GameSimulation simulation, Runnable renderer, int tickRate, int targetFps) {
+        this.simulation = simulation;
+        this.renderer = renderer;
+        this.stepNanos = 1_000_000_000L / tickRate;
+        this.frameNanos = 1_000_000_000L / targetFps;
+    }
+
+    // Runs before every tick without the simulation's lock, e.g. a bot deciding on its next move
+    public void setBeforeTick(Runnable beforeTick) {
+        this.beforeTick = beforeTick;
+    }
+
+    // Runs after every tick, also without the lock, e.g. to send the new state somewhere
+    public void setAfterTick(Runnable afterTick) {
+        this.afterTick = afterTick;
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this, "game-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        long previous = System.nanoTime();
+        long accumulator = 0;
+        long nextFrame = previous;
+
+        while (running) {
+            long now = System.nanoTime();
+            accumulator += Math.min(now - previous, MAX_CATCH_UP_NANOS);
+            previous = now;
+
+            // Run as many whole physics steps as real time allows
+            while (accumulator >= stepNanos) {
+                beforeTick.run();
+                synchronized (simulation) {
+                    simulation.tick();
+                }
+                afterTick.run();
+                accumulator -= stepNanos;
+            }
+
+            if (now - nextFrame >= 0) {
+                alpha = (double) accumulator / stepNanos;
+                renderer.run();
+                nextFrame += frameNanos;
+                if (now - nextFrame >= 0) {
+                    nextFrame = now + frameNanos; // Rendering fell behind; don't burst to catch up
+                }
+            }
+
+            // Sleep until whichever comes first: the next physics step or the next frame
+            long untilStep = stepNanos - accumulator;
+            long untilFrame = nextFrame - System.nanoTime();
+            long wait = Math.min(untilStep, untilFrame);
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+    }
+
+    // Fraction of a physics step elapsed since the last tick, for render interpolation
+    public double getAlpha() {
+        return alpha;
+    }
+}
@@ -0,0 +1,151 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+// Draws a frame of the game as layers, back to front:
+//   sky             a flat fill below the clouds
+//   clouds          one opaque image of the band of sky the clouds fly in, re-rendered only every
+//                   few ticks since clouds barely move
+//   pipes           sprite blits
+//   ground          one blit of the scrolling tile
+//   bird, popups    sprite blits
+//   HUD             cached text image and banners
+// Every frame is drawn in full, since a flipped back buffer holds an older frame.
+//
+// The simulation is in world units; everything is drawn zoomed to fill the window, with sprites
+// rasterized at the zoomed size so they stay sharp. A window of a different shape than the world
+// gets black bars.
+public class GameRenderer {
+    private static final Color SKY_COLOR = new Color(135, 206, 235);
+    private static final int CLOUD_LAYER_TICKS = 2; // Clouds move at most 0.5 px per tick at scale 1
+
+    private final int width; // The world's area of the window
+    private final int height;
+    private final int offsetX; // Top-left corner of that area
+    private final int offsetY;
+    private final int windowWidth;
+    private final int windowHeight;
+    private final double zoom; // Window pixels per world unit
+    private final Ground ground;
+    private final Hud hud;
+    private final FrameProfiler profiler;
+    private int bestScore = -1; // Shown on the game over screen when set
+
+    private final int skyHeight; // Down to the ground
+    private final int cloudBandHeight;
+    private BufferedImage cloudLayer;
+    private long cloudLayerTick = -1;
+    private long cloudLayerSeed;
+
+    public GameRenderer(GameSimulation simulation, int windowWidth, int windowHeight, FrameProfiler profiler) {
+        this.windowWidth = windowWidth;
+        this.windowHeight = windowHeight;
+        this.zoom = Math.min((double) windowWidth / simulation.getWidth(), (double) windowHeight / simulation.getHeight());
+        this.width = (int) Math.round(simulation.getWidth() * zoom);
+        this.height = (int) Math.round(simulation.getHeight() * zoom);
+        this.offsetX = (windowWidth - width) / 2;
+        this.offsetY = (windowHeight - height) / 2;
+
+        double scale = simulation.getScale() * zoom; // Sprite and font scale
+        int groundHeight = (int) Math.round(simulation.getGroundHeight() * zoom);
+        this.ground = new Ground(width, height, groundHeight, scale);
+        this.hud = new Hud(scale);
+        this.profiler = profiler;
+        this.skyHeight = height - groundHeight;
+        // Clouds start in the top third and respawn within 200 world units (scaled) of the top
+        int lowestCloud = Math.max(height / 3, (int) (200 * scale));
+        this.cloudBandHeight = Math.min(skyHeight, lowestCloud + (int) (Cloud.BASE_SIZE * scale * 1.5) + 4);
+    }
+
+    // alpha blends between the previous and current tick; the caller holds the simulation still
+    public void render(Graphics2D g2d, GameSimulation simulation, double alpha) {
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        int score = simulation.getScore();
+        int level = simulation.getLevel();
+        int levelUpTimer = simulation.getLevelUpTimer();
+        boolean letterboxed = width != windowWidth || height != windowHeight;
+        if (letterboxed) {
+            g2d.translate(offsetX, offsetY);
+        }
+
+        // Draw sky and clouds
+        long t = profiler.start();
+        updateCloudLayer(simulation);
+        g2d.drawImage(cloudLayer, 0, 0, null);
+        g2d.setColor(SKY_COLOR);
+        g2d.fillRect(0, cloudBandHeight, width, skyHeight - cloudBandHeight);
+        t = profiler.lap(FrameProfiler.PAINT_CLOUDS, t);
+
+        // Draw pipes
+        PipeRing pipes = simulation.getPipes();
+        for (int i = 0; i < pipes.size(); i++) {
+            pipes.get(i).draw(g2d, alpha, zoom);
+        }
+        t = profiler.lap(FrameProfiler.PAINT_PIPES, t);
+
+        // Draw ground
+        ground.draw(g2d, simulation.getGroundOffset(alpha) * zoom);
+        t = profiler.lap(FrameProfiler.PAINT_GROUND, t);
+
+        // Draw bird
+        simulation.getBird().draw(g2d, alpha, zoom);
+        t = profiler.lap(FrameProfiler.PAINT_BIRD, t);
+
+        // Draw score popups
+        for (ScorePopup popup : simulation.getScorePopups()) {
+            popup.draw(g2d, alpha, zoom);
+        }
+        t = profiler.lap(FrameProfiler.PAINT_POPUPS, t);
+
+        // Draw score and level
+        hud.drawScore(g2d, score, level);
+
+        // Draw level up message
+        if (levelUpTimer > 0) {
+            hud.drawLevelUp(g2d, level, levelUpTimer, width, height);
+        }
+
+        if (simulation.isGameOver()) {
+            hud.drawGameOver(g2d, level, bestScore, width, height);
+        }
+
+        if (letterboxed) {
+            // Pipes enter and leave beyond the world's edges, so the bars go on top
+            g2d.translate(-offsetX, -offsetY);
+            g2d.setColor(Color.BLACK);
+            g2d.fillRect(0, 0, offsetX, windowHeight);
+            g2d.fillRect(offsetX + width, 0, windowWidth - offsetX - width, windowHeight);
+            g2d.fillRect(offsetX, 0, width, offsetY);
+            g2d.fillRect(offsetX, offsetY + height, width, windowHeight - offsetY - height);
+        }
+        profiler.lap(FrameProfiler.PAINT_HUD, t);
+    }
+
+    // Called with the simulation held still, like render()
+    public void setBestScore(int bestScore) {
+        this.bestScore = bestScore;
+    }
+
+    // Re-render the cloud band once the clouds have moved far enough to matter, or on a new game
+    private void updateCloudLayer(GameSimulation simulation) {
+        long tick = simulation.getTick();
+        boolean newGame = simulation.getSeed() != cloudLayerSeed || tick < cloudLayerTick;
+        if (cloudLayer != null && !newGame && tick - cloudLayerTick < CLOUD_LAYER_TICKS) {
+            return;
+        }
+        if (cloudLayer == null) {
+            cloudLayer = SpriteCache.createImage(width, cloudBandHeight, Transparency.OPAQUE);
+        }
+        Graphics2D g = cloudLayer.createGraphics();
+        g.setColor(SKY_COLOR);
+        g.fillRect(0, 0, width, cloudBandHeight);
+        List<Cloud> clouds = simulation.getClouds();
+        for (Cloud cloud : clouds) {
+            cloud.draw(g, 1.0, zoom);
+        }
+        g.dispose();
+        cloudLayerTick = tick;
+        cloudLayerSeed = simulation.getSeed();
+    }
+}
@@ -0,0 +1,434 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+// Hosts many players' games server-side, so scores come from the server's own simulation rather
+// than the client's word. Each TCP connection is one session: a headless GameSimulation fed by
+// the jumps the client sends.
+//
+// Sessions are split into shards, one thread each, that tick all their games in one batch every
+// 1/TICK_RATE s; a game costs a microsecond or two a tick, so a shard carries thousands of them.
+// One selector thread does all the socket I/O. The two meet in each session's small buffers,
+// under the session's lock.
+//
+// Protocol, big-endian, client to server:
+//   JOIN seed:long   start a new game on that seed (also after game over)
+//   JUMP tick:int    jump before the game's tick-th tick, counted from 0 like Replay
+// server to client:
+//   OVER score:int ticks:int   the game ended
+// The server starts ticking a game INPUT_DELAY_TICKS after its JOIN arrives, so a client that
+// plays its own copy of the game in step and sends each jump when it makes it is that far ahead;
+// a jump arriving after its tick has run is applied at once and counted as late. So is a jump
+// arriving after the game has ended, which is dropped.
+public class GameServer {
+    public static final int DEFAULT_PORT = 7777;
+    public static final int TICK_RATE = 50; // Same as the window's game loop
+    public static final int INPUT_DELAY_TICKS = 5; // 100 ms of slack for jumps to arrive
+
+    static final byte JOIN = 1;
+    static final byte JUMP = 2;
+    static final byte OVER = 3;
+    static final int JOIN_BYTES = 9;
+    static final int JUMP_BYTES = 5;
+    static final int OVER_BYTES = 9;
+
+    private static final long TICK_NANOS = 1_000_000_000L / TICK_RATE;
+    private static final long MAX_CATCH_UP_NANOS = 250_000_000L; // Drop ticks after long stalls
+    private static final int MAX_PENDING_JUMPS = 64; // Per session, over a second of jumps; more is flooding
+    private static final int BUFFER_BYTES = 256;
+    private static final int GAME_ENDED = 1 << 30; // Flag in Session.tick()'s result
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Shard[] shards;
+    private final ConcurrentLinkedQueue<Session> flushQueue = new ConcurrentLinkedQueue<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+    private int nextShard;
+
+    // port 0 picks a free one; see getPort()
+    public GameServer(int port, int shardCount) throws IOException {
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress("localhost", port), 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public void start() {
+        running = true;
+        threads.add(new Thread(this::serve, "server-io"));
+        for (int i = 0; i < shards.length; i++) {
+            threads.add(new Thread(shards[i], "server-shard-" + i));
+        }
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public void stop() throws IOException {
+        running = false;
+        selector.wakeup();
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        server.close();
+    }
+
+    // One game per connection. Shards only ever see a session through its buffers, so a slow or
+    // dead client never stalls a tick.
+    static final class Session {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(BUFFER_BYTES);
+        final ByteBuffer out = ByteBuffer.allocate(BUFFER_BYTES); // Guarded by this
+        volatile boolean closed;
+
+        // Set by the I/O thread, taken by the shard; guarded by this
+        private boolean joinPending;
+        private long joinSeed;
+        private final int[] jumps = new int[MAX_PENDING_JUMPS];
+        private int jumpCount;
+
+        // Only touched by the shard
+        private GameSimulation simulation;
+        private boolean playing;
+        private int waitTicks;
+
+        Session(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        synchronized void join(long seed) {
+            joinPending = true;
+            joinSeed = seed;
+            jumpCount = 0;
+        }
+
+        // False when the client has too many jumps in flight
+        synchronized boolean addJump(int tick) {
+            if (jumpCount == jumps.length) {
+                return false;
+            }
+            jumps[jumpCount++] = tick;
+            return true;
+        }
+
+        // Runs one tick of the game, if one is under way. Returns how many jumps came in late, plus
+        // GAME_ENDED when the game ended and an OVER message is waiting in out.
+        int tick() {
+            synchronized (this) {
+                if (joinPending) {
+                    if (simulation == null) {
+                        simulation = new GameSimulation(false, joinSeed);
+                    } else {
+                        simulation.reset(joinSeed);
+                    }
+                    joinPending = false;
+                    playing = true;
+                    waitTicks = INPUT_DELAY_TICKS;
+                } else if (!playing) {
+                    // The game ended before these jumps arrived; the next JOIN would clear them anyway
+                    int late = jumpCount;
+                    jumpCount = 0;
+                    return late;
+                }
+            }
+            if (waitTicks > 0) {
+                waitTicks--;
+                return 0;
+            }
+
+            long tick = simulation.getTick();
+            boolean jump = false;
+            int late = 0;
+            synchronized (this) {
+                // Take the jumps due by this tick, keeping later ones in arrival order
+                int kept = 0;
+                for (int i = 0; i < jumpCount; i++) {
+                    if (jumps[i] <= tick) {
+                        jump = true;
+                        if (jumps[i] < tick) {
+                            late++;
+                        }
+                    } else {
+                        jumps[kept++] = jumps[i];
+                    }
+                }
+                jumpCount = kept;
+            }
+            if (jump) {
+                simulation.jump();
+            }
+            simulation.tick();
+            if (!simulation.isGameOver()) {
+                return late;
+            }
+
+            playing = false;
+            synchronized (this) {
+                if (out.remaining() < OVER_BYTES) {
+                    closed = true; // Not reading its results; the I/O thread drops it
+                } else {
+                    out.put(OVER).putInt(simulation.getScore()).putInt((int) simulation.getTick());
+                }
+            }
+            return late | GAME_ENDED;
+        }
+    }
+
+    // Ticks its sessions on a fixed schedule and keeps timing for the summary
+    private final class Shard implements Runnable {
+        private final ConcurrentLinkedQueue<Session> added = new ConcurrentLinkedQueue<>();
+        private final List<Session> sessions = new ArrayList<>();
+
+        // Guarded by this; swapped out by takeStats()
+        private final LatencyHistogram batchTimes = new LatencyHistogram();
+        private final LatencyHistogram lateness = new LatencyHistogram(); // Batch start past its schedule
+        private long busyNanos;
+        private long sessionTicks;
+        private long lateInputs;
+        private long gamesEnded;
+        private int sessionCount;
+
+        @Override
+        public void run() {
+            long next = System.nanoTime();
+            while (running) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                    continue;
+                }
+                long start = System.nanoTime();
+                if (start - next > MAX_CATCH_UP_NANOS) {
+                    next = start;
+                }
+                batch(start, start - next);
+                next += TICK_NANOS;
+            }
+        }
+
+        private void batch(long start, long late) {
+            for (Session session = added.poll(); session != null; session = added.poll()) {
+                sessions.add(session);
+            }
+            long ticked = 0;
+            long lateJumps = 0;
+            long ended = 0;
+            for (int i = sessions.size() - 1; i >= 0; i--) {
+                Session session = sessions.get(i);
+                if (session.closed) {
+                    // Order does not matter, so fill the hole from the end
+                    sessions.set(i, sessions.get(sessions.size() - 1));
+                    sessions.remove(sessions.size() - 1);
+                    continue;
+                }
+                boolean wasPlaying = session.playing;
+                int result = session.tick();
+                if (wasPlaying) {
+                    ticked++;
+                }
+                lateJumps += result & ~GAME_ENDED;
+                if ((result & GAME_ENDED) != 0) {
+                    ended++;
+                    flushQueue.add(session);
+                }
+            }
+            if (ended > 0) {
+                selector.wakeup();
+            }
+
+            long elapsed = System.nanoTime() - start;
+            synchronized (this) {
+                batchTimes.record(elapsed);
+                lateness.record(late);
+                busyNanos += elapsed;
+                sessionTicks += ticked;
+                lateInputs += lateJumps;
+                gamesEnded += ended;
+                sessionCount = sessions.size();
+            }
+        }
+    }
+
+    private void serve() {
+        try {
+            while (running) {
+                selector.select();
+                for (Session session = flushQueue.poll(); session != null; session = flushQueue.poll()) {
+                    flush(session);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Session session = (Session) key.attachment();
+                    if (key.isReadable()) {
+                        read(session);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        flush(session);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            if (running) {
+                System.err.println("Server stopped: " + ex.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Session session = new Session(channel);
+            channel.register(selector, SelectionKey.OP_READ, session);
+            shards[nextShard].added.add(session);
+            nextShard = (nextShard + 1) % shards.length;
+        }
+    }
+
+    private void read(Session session) {
+        ByteBuffer in = session.in;
+        try {
+            if (session.channel.read(in) < 0) {
+                close(session);
+                return;
+            }
+        } catch (IOException ex) {
+            close(session);
+            return;
+        }
+        in.flip();
+        while (in.hasRemaining()) {
+            byte type = in.get(in.position());
+            if (type == JOIN && in.remaining() >= JOIN_BYTES) {
+                in.get();
+                session.join(in.getLong());
+            } else if (type == JUMP && in.remaining() >= JUMP_BYTES) {
+                in.get();
+                if (!session.addJump(in.getInt())) {
+                    close(session);
+                    return;
+                }
+            } else if (type != JOIN && type != JUMP) {
+                close(session); // Not speaking the protocol
+                return;
+            } else {
+                break; // Rest of the message is still in flight
+            }
+        }
+        in.compact();
+    }
+
+    private void flush(Session session) {
+        if (session.closed) {
+            close(session);
+            return;
+        }
+        SelectionKey key = session.channel.keyFor(selector);
+        try {
+            synchronized (session) {
+                session.out.flip();
+                session.channel.write(session.out);
+                session.out.compact();
+                // Wait for the socket to drain rather than spin on a full one
+                key.interestOps(session.out.position() > 0
+                        ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            }
+        } catch (IOException ex) {
+            close(session);
+        }
+    }
+
+    private void close(Session session) {
+        session.closed = true;
+        try {
+            session.channel.close(); // Also cancels its key
+        } catch (IOException ignored) {
+            // Already gone
+        }
+    }
+
+    // Timings since the last call, across shards
+    public String summary(long windowNanos) {
+        LatencyHistogram batches = new LatencyHistogram();
+        LatencyHistogram lateness = new LatencyHistogram();
+        long busy = 0;
+        long ticks = 0;
+        long late = 0;
+        long ended = 0;
+        int sessions = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                batches.add(shard.batchTimes);
+                lateness.add(shard.lateness);
+                busy += shard.busyNanos;
+                ticks += shard.sessionTicks;
+                late += shard.lateInputs;
+                ended += shard.gamesEnded;
+                sessions += shard.sessionCount;
+                shard.batchTimes.reset();
+                shard.lateness.reset();
+                shard.busyNanos = 0;
+                shard.sessionTicks = 0;
+                shard.lateInputs = 0;
+                shard.gamesEnded = 0;
+            }
+        }
+        double cores = (double) busy / windowNanos;
+        double nanosPerTick = ticks == 0 ? 0 : (double) busy / ticks;
+        // Game ticks one core could run at TICK_RATE, i.e. how many playing sessions it could host
+        double sessionsPerCore = nanosPerTick == 0 ? 0 : 1e9 / nanosPerTick / TICK_RATE;
+        return String.format("%d sessions, %.0f game ticks/s, batch p50 %.2f p99 %.2f max %.2f ms, "
+                        + "start late p99 %.2f ms, %.2f us/game tick, %.2f cores busy, ~%.0f sessions/core, "
+                        + "%d games ended, %d late jumps",
+                sessions, ticks * 1e9 / windowNanos, batches.getValueAtPercentile(50) / 1e6,
+                batches.getValueAtPercentile(99) / 1e6, batches.getMax() / 1e6,
+                lateness.getValueAtPercentile(99) / 1e6, nanosPerTick / 1e3, cores, sessionsPerCore, ended, late);
+    }
+
+    // java GameServer [port] [shards]; prints a summary every second
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int shards = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        GameServer server = new GameServer(port, shards);
+        server.start();
+        System.out.println("Listening on localhost:" + server.getPort() + " with " + shards + " shards");
+        long last = System.nanoTime();
+        while (true) {
+            Thread.sleep(1000);
+            long now = System.nanoTime();
+            System.out.println(server.summary(now - last));
+            last = now;
+        }
+    }
+}
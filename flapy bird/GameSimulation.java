@@ -0,0 +1,387 @@
+import java.awt.Rectangle;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+// One game in world units. Every game is played in the same WORLD_WIDTH x WORLD_HEIGHT world,
+// whatever the window, so a given seed and input log play out identically on any screen;
+// GameRenderer maps the world onto the window when drawing.
+//
+// Before world units the game was simulated at window size and the physics scaled with it
+// (gravity and fall speed twice over, jumps not at all), so games on different screens played
+// differently. Other world sizes still reproduce that, for replays recorded back then.
+public class GameSimulation {
+    public static final int WORLD_WIDTH = 800;
+    public static final int WORLD_HEIGHT = 600;
+    static final double GROUND_HEIGHT_RATIO = 0.15; // 15% of screen height
+    private static final int SNAPSHOT_MAGIC = 0x46425353; // "FBSS"
+    private static final CollisionMode[] COLLISION_MODES = CollisionMode.values(); // values() copies
+    private static final int LEVEL_UP_TICKS = 60;
+    private static final long EFFECTS_SALT = 0x5DEECE66DL; // Keeps the visual stream apart from gameplay
+
+    private final int width;
+    private final int height;
+    private final double scale;
+    private final boolean effects; // Clouds, particles and popups are purely visual
+
+    private Bird bird;
+    private PipeCourse course;
+    private ArrayList<Cloud> clouds;
+    private ArrayList<ScorePopup> scorePopups;
+    private boolean gameOver;
+    private GameRandom effectsRandom; // Clouds and particles, so visuals never shift the course
+    private long seed;
+    private double groundOffset;
+    private double prevGroundOffset;
+    private double parallaxOffset;
+    private int levelUpTimer;
+    private long tick;
+    private FrameProfiler profiler = FrameProfiler.DISABLED;
+    private CollisionMode collisionMode = CollisionMode.SWEPT_BOX;
+
+    public GameSimulation(boolean effects, long seed) {
+        this(WORLD_WIDTH, WORLD_HEIGHT, effects, seed);
+    }
+
+    // A world of another size, scaled the way games were before world units; see Replay
+    public GameSimulation(int width, int height, boolean effects, long seed) {
+        this.width = width;
+        this.height = height;
+        this.effects = effects;
+
+        // 1 in the standard world
+        this.scale = Math.min(width / (double) WORLD_WIDTH, height / (double) WORLD_HEIGHT);
+
+        course = new PipeCourse(width, height, getGroundHeight(), scale);
+        clouds = new ArrayList<>();
+        scorePopups = new ArrayList<>();
+        effectsRandom = new GameRandom(seed ^ EFFECTS_SALT);
+        groundOffset = 0;
+        parallaxOffset = 0;
+
+        // Add initial clouds
+        if (effects) {
+            for (int i = 0; i < 5; i++) {
+                clouds.add(new Cloud(effectsRandom.nextInt(width), effectsRandom.nextInt(height / 3), scale,
+                        effectsRandom));
+            }
+        }
+
+        bird = new Bird(width / 4, height / 2, scale, effectsRandom);
+        bird.setParticlesEnabled(effects);
+        reset(seed);
+    }
+
+    // Start a new game; the same seed and the same jumps always produce the same game.
+    // Clouds and scrolling offsets carry over like they always have.
+    public void reset(long seed) {
+        this.seed = seed;
+        bird.reset(width / 4, height / 2);
+        course.reset(seed);
+        scorePopups.clear();
+        gameOver = false;
+        levelUpTimer = 0;
+        tick = 0;
+    }
+
+    public void jump() {
+        if (!gameOver) {
+            bird.jump();
+        }
+    }
+
+    // Advance the game by one fixed step (one DELAY of the original Swing timer)
+    public void tick() {
+        if (gameOver) {
+            return;
+        }
+        profiler.beginTick();
+        long t = profiler.start();
+        tick++;
+        bird.update();
+        t = profiler.lap(FrameProfiler.BIRD_UPDATE, t);
+
+        updateClouds();
+
+        // Update ground offset
+        prevGroundOffset = groundOffset;
+        groundOffset += 0.5 * scale;
+        t = profiler.lap(FrameProfiler.CLOUD_UPDATE, t);
+
+        // Update pipes
+        int level = course.getLevel();
+        int passed = course.update(bird.getX());
+        if (course.getLevel() != level) {
+            levelUpTimer = LEVEL_UP_TICKS;
+        }
+
+        if (hitsPipe()) {
+            gameOver = true;
+        }
+        t = profiler.lap(FrameProfiler.PIPE_UPDATE, t);
+
+        // Add score popup at the center of the gap
+        if (effects && passed > 0) {
+            Pipe pipe = course.getLastPassed();
+            scorePopups.add(new ScorePopup(pipe.getX() + pipe.getWidth() / 2,
+                    pipe.getGapY() + pipe.getGapHeight() / 2, scale));
+        }
+
+        // Update score popups
+        for (int i = scorePopups.size() - 1; i >= 0; i--) {
+            ScorePopup popup = scorePopups.get(i);
+            popup.update();
+            if (popup.isDead()) {
+                scorePopups.remove(i);
+            }
+        }
+        profiler.lap(FrameProfiler.POPUP_UPDATE, t);
+
+        if (levelUpTimer > 0) {
+            levelUpTimer--;
+        }
+
+        // Check if bird hits the ground or ceiling
+        if (bird.getY() <= 0 || bird.getY() >= height - (height * GROUND_HEIGHT_RATIO)) {
+            gameOver = true;
+        }
+        profiler.endTick();
+    }
+
+    // Clouds with parallax. Also run on its own by StateStreamDecoder: clouds are not part of the
+    // stream, so spectators animate their own.
+    void updateClouds() {
+        parallaxOffset += 0.3 * scale;
+        for (Cloud cloud : clouds) {
+            cloud.update();
+            if (cloud.getX() > width) {
+                cloud.reset(width);
+            }
+        }
+    }
+
+    // Check collision with both top and bottom pipe sections of the pipes near the bird
+    boolean hitsPipe() {
+        Rectangle box = bird.getBounds();
+        double radius = box.width / 2.0;
+        double left = box.x;
+        double right = box.x + box.width;
+        if (collisionMode == CollisionMode.CIRCLE) {
+            left = bird.getX() - radius - Pipe.CAP_OVERHANG * scale; // Caps reach past the pipe's x range
+            right = bird.getX() + radius + Pipe.CAP_OVERHANG * scale;
+        }
+        int prevTop = (int) (bird.getPrevY() - Bird.BIRD_SIZE * scale / 2);
+        PipeRing pipes = course.getPipes();
+        for (int i = course.firstCandidate(left); i < pipes.size(); i++) {
+            Pipe pipe = pipes.get(i);
+            if (pipe.getX() >= right) {
+                break; // Everything further on is further right
+            }
+            boolean hit;
+            switch (collisionMode) {
+                case DISCRETE_BOX:
+                    hit = Collision.boxHitsPipe(box.x, box.y, box.width, pipe);
+                    break;
+                case SWEPT_BOX:
+                    hit = Collision.sweptBoxHitsPipe(box.x, prevTop, box.y, box.width, pipe);
+                    break;
+                default:
+                    hit = Collision.sweptCircleHitsPipe(bird.getX(), bird.getPrevY(), bird.getY(), radius, scale, pipe);
+                    break;
+            }
+            if (hit) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Write the whole game state at the buffer's position: the bird, pipes, clouds, popups, both
+    // random streams and every counter. Nothing is allocated; a buffer of getSnapshotSize() bytes
+    // or more is enough (BufferOverflowException otherwise), and can be reused for every snapshot.
+    public void save(ByteBuffer out) {
+        out.putInt(SNAPSHOT_MAGIC).putInt(width).putInt(height).put((byte) (effects ? 1 : 0))
+                .put((byte) (gameOver ? 1 : 0)).putLong(seed).putLong(tick)
+                .putDouble(groundOffset).putDouble(prevGroundOffset).putDouble(parallaxOffset)
+                .putInt(levelUpTimer).put((byte) collisionMode.ordinal()).putLong(effectsRandom.getState());
+        bird.save(out);
+        course.save(out);
+        out.putInt(clouds.size());
+        for (Cloud cloud : clouds) {
+            cloud.save(out);
+        }
+        out.putInt(scorePopups.size());
+        for (ScorePopup popup : scorePopups) {
+            popup.save(out);
+        }
+    }
+
+    // Put the game back exactly as it was at save(), reading from the buffer's position; ticks
+    // from there on, with the same jumps, play out identically. The snapshot must come from a
+    // simulation of the same world size. A headless simulation also takes snapshots of games
+    // with effects and drops the visual parts, e.g. for a bot searching ahead of the on-screen
+    // game. Existing objects are refilled, so rewinding or restarting this way allocates nothing
+    // beyond new score popups.
+    public void restore(ByteBuffer in) {
+        if (in.getInt() != SNAPSHOT_MAGIC || in.getInt() != width || in.getInt() != height) {
+            throw new IllegalArgumentException("Not a snapshot of a " + width + "x" + height + " game");
+        }
+        boolean savedEffects = in.get() != 0;
+        if (effects && !savedEffects) {
+            throw new IllegalArgumentException("Snapshot of a headless game has no clouds or particles");
+        }
+        gameOver = in.get() != 0;
+        seed = in.getLong();
+        tick = in.getLong();
+        groundOffset = in.getDouble();
+        prevGroundOffset = in.getDouble();
+        parallaxOffset = in.getDouble();
+        levelUpTimer = in.getInt();
+        collisionMode = COLLISION_MODES[in.get()];
+        effectsRandom.setState(in.getLong());
+        bird.restore(in, effects);
+        course.restore(in);
+
+        int cloudCount = in.getInt();
+        if (savedEffects && !effects) {
+            in.position(in.position() + cloudCount * Cloud.SNAPSHOT_BYTES);
+            in.position(in.position() + in.getInt() * ScorePopup.SNAPSHOT_BYTES);
+            return;
+        }
+        if (cloudCount != clouds.size()) {
+            throw new IllegalArgumentException("Snapshot has " + cloudCount + " clouds, expected " + clouds.size());
+        }
+        for (Cloud cloud : clouds) {
+            cloud.restore(in);
+        }
+
+        int popupCount = in.getInt();
+        while (scorePopups.size() > popupCount) {
+            scorePopups.remove(scorePopups.size() - 1);
+        }
+        for (int i = 0; i < popupCount; i++) {
+            if (i == scorePopups.size()) {
+                scorePopups.add(new ScorePopup(0, 0, scale));
+            }
+            scorePopups.get(i).restore(in);
+        }
+    }
+
+    // Everything but the bird, pipes and popups from a StateStreamDecoder, which sets those through
+    // their own getters; the game is not ticked on the spectator's side
+    void setStreamedState(long seed, long tick, boolean gameOver, int score, int level, int levelUpTimer,
+            double groundOffset, double prevGroundOffset) {
+        this.seed = seed;
+        this.tick = tick;
+        this.gameOver = gameOver;
+        this.levelUpTimer = levelUpTimer;
+        this.groundOffset = groundOffset;
+        this.prevGroundOffset = prevGroundOffset;
+        course.setStreamedState(score, level);
+    }
+
+    // Bytes save() writes for the current state
+    public int getSnapshotSize() {
+        return 3 * Integer.BYTES + 2 + 2 * Long.BYTES + 3 * Double.BYTES + Integer.BYTES + 1 + Long.BYTES
+                + bird.snapshotSize() + course.snapshotSize()
+                + Integer.BYTES + clouds.size() * Cloud.SNAPSHOT_BYTES
+                + Integer.BYTES + scorePopups.size() * ScorePopup.SNAPSHOT_BYTES;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    // 1 except in worlds of another size
+    public double getScale() {
+        return scale;
+    }
+
+    public int getGroundHeight() {
+        return (int) (height * GROUND_HEIGHT_RATIO);
+    }
+
+    public Bird getBird() {
+        return bird;
+    }
+
+    public PipeRing getPipes() {
+        return course.getPipes();
+    }
+
+    // The first pipe the bird has not yet passed
+    public Pipe getNextPipe() {
+        return course.getNextPipe();
+    }
+
+    public List<Cloud> getClouds() {
+        return clouds;
+    }
+
+    public List<ScorePopup> getScorePopups() {
+        return scorePopups;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public int getScore() {
+        return course.getScore();
+    }
+
+    public int getLevel() {
+        return course.getLevel();
+    }
+
+    public int getLevelUpTimer() {
+        return levelUpTimer;
+    }
+
+    // Interpolated between the previous and current tick (alpha 0 = previous, 1 = current)
+    public double getGroundOffset(double alpha) {
+        return prevGroundOffset + (groundOffset - prevGroundOffset) * alpha;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public CollisionMode getCollisionMode() {
+        return collisionMode;
+    }
+
+    // Takes effect from the next tick; replays record the mode so they play back the same way
+    public void setCollisionMode(CollisionMode collisionMode) {
+        this.collisionMode = collisionMode;
+    }
+
+    // RANDOM unless set; the window plays REACHABLE courses
+    public CourseMode getCourseMode() {
+        return course.getMode();
+    }
+
+    // Takes effect from the next reset(); replays record it like the collision mode
+    public void setCourseMode(CourseMode courseMode) {
+        course.setMode(courseMode);
+    }
+
+    // Works out seed's course on another thread, so a later reset(seed) in this course mode does
+    // not wait for it. Only REACHABLE courses need any work.
+    public void prepareCourse(long seed) {
+        course.prepare(seed);
+    }
+
+    // Times the phases of every tick; FrameProfiler.DISABLED (the default) measures nothing
+    public void setProfiler(FrameProfiler profiler) {
+        this.profiler = profiler;
+    }
+}
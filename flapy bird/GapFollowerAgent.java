@@ -0,0 +1,13 @@
+// Simple baseline: flap whenever the bird sinks below a point in the lower part of the gap
+public class GapFollowerAgent implements Agent {
+    private final double target; // Fraction of the gap height, measured from its top
+
+    public GapFollowerAgent(double target) {
+        this.target = target;
+    }
+
+    @Override
+    public boolean shouldJump(double birdY, double velocity, double pipeDistance, double gapTop, double gapBottom) {
+        return birdY > gapTop + (gapBottom - gapTop) * target;
+    }
+}
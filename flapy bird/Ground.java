@@ -1,61 +1,58 @@
 import java.awt.*;
-import java.awt.geom.Area;
-import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 
+// The ground strip (soil gradient, wavy grass and shadow) rendered once into a tile that is
+// one wave period wider than the screen, then scrolled with a single blit per frame
 public class Ground {
-    private double x;
-    private double y;
-    private double width;
-    private double height;
-    private double speed;
-    private static final double BASE_SPEED = 2.0;
-    private static final int GROUND_HEIGHT = 150;
-
-    public Ground(int x, int y, double speed, double scale) {
-        this.x = x;
-        this.y = y;
-        this.width = 1000 * scale; // Assuming a sufficient width
-        this.height = GROUND_HEIGHT * scale;
-        this.speed = speed * scale;
+    private static final double WAVE_FREQUENCY = 0.05;
+    // Three wave periods (3 * 2 * PI / 0.05 = 376.991) land within 0.01 px of a whole pixel,
+    // so wrapping the scroll offset at 377 px is seamless
+    private static final int WAVE_PERIOD = 377;
+
+    private final int width;
+    private final int height;
+    private final int groundHeight;
+    private final double scale;
+    private BufferedImage tile;
+
+    public Ground(int width, int height, int groundHeight, double scale) {
+        this.width = width;
+        this.height = height;
+        this.groundHeight = groundHeight;
+        this.scale = scale;
     }
 
-    public void update() {
-        x -= speed;
-        // If the ground piece moves off-screen to the left, reset its position
-        if (x + width < 0) {
-            x = x + width * 2; // Place it back to the right, creating a continuous effect
+    public void draw(Graphics2D g2d, double groundOffset) {
+        if (tile == null) {
+            tile = SpriteCache.createImage(width + WAVE_PERIOD, groundHeight, Transparency.OPAQUE);
+            Graphics2D g = tile.createGraphics();
+            paintTile(g, tile.getWidth());
+            g.dispose();
         }
+        int shift = (int) (groundOffset % WAVE_PERIOD);
+        g2d.drawImage(tile, -shift, height - groundHeight, null);
     }
 
-    public void draw(Graphics2D g2d) {
-        // Draw the dirt/stone layer
-        g2d.setColor(new Color(139, 69, 19)); // Saddle Brown
-        g2d.fill(new Rectangle2D.Double(x, y, width, height));
-
-        // Draw the grass layer
-        g2d.setColor(new Color(124, 252, 0)); // Lawn Green
-        g2d.fill(new Rectangle2D.Double(x, y, width, height * 0.3)); // Grass on top 30%
-
-        // Add some simple texture elements (optional, can be expanded)
-        g2d.setColor(new Color(107, 142, 35)); // Olive Drab for texture
-        for (int i = 0; i < width; i += 20) {
-            g2d.fillRect((int) (x + i), (int) (y + height * 0.3 - 5), 5, 5);
+    // Ground of the given width with its top-left corner at the origin and the grass wave at phase 0
+    private void paintTile(Graphics2D g, int tileWidth) {
+        // Draw ground base with gradient
+        GradientPaint groundGradient = new GradientPaint(
+                0, 0,
+                new Color(139, 69, 19),
+                0, groundHeight,
+                new Color(101, 67, 33));
+        g.setPaint(groundGradient);
+        g.fillRect(0, 0, tileWidth, groundHeight);
+
+        // Draw grass with smooth wave
+        g.setColor(new Color(34, 139, 34));
+        for (int i = 0; i < tileWidth; i += 2) {
+            double wave = Math.sin(i * WAVE_FREQUENCY) * (8 * scale);
+            g.fillRect(i, 0, 2, (int) (25 * scale) + (int) wave);
         }
-    }
-
-    public double getX() {
-        return x;
-    }
-
-    public double getY() {
-        return y;
-    }
-
-    public double getWidth() {
-        return width;
-    }
 
-    public Rectangle2D getBounds() {
-        return new Rectangle2D.Double(x, y, width, height);
+        // Draw ground shadow
+        g.setColor(new Color(0, 0, 0, 40));
+        g.fillRect(0, 0, tileWidth, (int) (8 * scale));
     }
-}
\ No newline at end of file
+}
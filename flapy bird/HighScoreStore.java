@@ -0,0 +1,556 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32C;
+
+// Finished games kept across restarts: an append-only log of fixed-size records in a
+// memory-mapped file, with the best few games and every seed's best game indexed in memory.
+//
+// submit() only queues a game. A writer thread appends queued games in batches, flushes each
+// batch to disk and only then adds it to the index, so callers never wait on the disk and the
+// index never shows a game a crash could lose. Every record ends with a CRC32C of its fields.
+// Opening the log scans records from the start and stops at the first one whose checksum fails,
+// so a record torn by a crash is dropped and the next game overwrites it. The file is mapped in
+// segments of up to SEGMENT_BYTES. The last one starts at MIN_SEGMENT_RECORDS and doubles as
+// games arrive, so a new log is a few KB rather than a whole segment. Its unused tail stays zero.
+//
+// File layout (big-endian):
+//   "FBHS"  magic
+//   u8      format version, then 11 bytes reserved
+//   records of RECORD_BYTES each:
+//     i64   seed
+//     i64   time the game was stored, in ms since the epoch
+//     i32   ticks played, score, level
+//     i32   CRC32C of the 28 bytes before it
+public class HighScoreStore implements AutoCloseable {
+    private static final int MAGIC = 0x46424853; // "FBHS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_BYTES = 32;
+    private static final int CHECKED_BYTES = RECORD_BYTES - 4;
+    private static final int SEGMENT_RECORDS = 1 << 17;
+    private static final int SEGMENT_BYTES = SEGMENT_RECORDS * RECORD_BYTES; // 4 MB
+    private static final int MIN_SEGMENT_RECORDS = 128; // 4 KB
+    private static final int MAX_BATCH = 4096; // Records written between flushes
+    public static final int DEFAULT_TOP = 10;
+
+    private static final Entry CLOSE = new Entry(0, 0, 0, 0, 0); // Queued last by close()
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean open = true;
+    private final Object submitLock = new Object(); // Orders submit() against close()
+    private boolean closed; // Guarded by submitLock
+
+    // Guarded by this. The writer maps segments and appends past count without the lock;
+    // everything below count is on disk and indexed.
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private int capacity; // Records the segments can hold
+    private int count;
+    private final int[] top; // Min-heap of record numbers, worst of the best at the root
+    private int topSize;
+    // Open addressing, two longs per slot so a probe touches one cache line: the seed, then its
+    // best record number + 1 (0 marks an empty slot) in the high half and that game's score in the low
+    private long[] seeds = new long[2 * 1024];
+    private int seedCount;
+
+    // A stored game
+    public static final class Entry {
+        private final long seed;
+        private final long time;
+        private final int ticks;
+        private final int score;
+        private final int level;
+
+        Entry(long seed, long time, int ticks, int score, int level) {
+            this.seed = seed;
+            this.time = time;
+            this.ticks = ticks;
+            this.score = score;
+            this.level = level;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        // ms since the epoch
+        public long getTime() {
+            return time;
+        }
+
+        public int getTicks() {
+            return ticks;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("score %d, level %d, %d ticks, seed %016x", score, level, ticks, seed);
+        }
+    }
+
+    public HighScoreStore(File file) throws IOException {
+        this(file, DEFAULT_TOP);
+    }
+
+    // Opens or creates the log at file and rebuilds the index from it. Only one process can
+    // have a log open at a time.
+    public HighScoreStore(File file, int topSize) throws IOException {
+        top = new int[topSize];
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            lock = channel.tryLock();
+            if (lock == null) {
+                throw new IOException(file + " is open in another process");
+            }
+            load(file);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+        writer = new Thread(this::write, "high-scores");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void load(File file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        if (channel.size() == 0) {
+            header.putInt(MAGIC).put((byte) VERSION).clear();
+            channel.write(header, 0);
+            channel.force(true);
+        } else {
+            channel.read(header, 0);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException(file + " is not a high-score log");
+            }
+            if (header.get(4) != VERSION) {
+                throw new IOException(file + " has unsupported version " + header.get(4));
+            }
+        }
+
+        // Valid records run from the start up to the first bad checksum; a partial record at the
+        // end of the file is not mapped at all
+        int existing = (int) Math.min(Integer.MAX_VALUE, Math.max(0, channel.size() - HEADER_BYTES) / RECORD_BYTES);
+        for (int s = 0; s * SEGMENT_RECORDS < existing; s++) {
+            segments.add(map(s, Math.min(SEGMENT_RECORDS, existing - s * SEGMENT_RECORDS)));
+        }
+        capacity = existing;
+        byte[] record = new byte[RECORD_BYTES];
+        CRC32C crc = new CRC32C();
+        while (count < capacity && valid(count, record, crc)) {
+            index(count++);
+        }
+    }
+
+    private MappedByteBuffer map(int segment, int records) throws IOException {
+        // Mapping past the end of the file grows it
+        return channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + (long) segment * SEGMENT_BYTES,
+                (long) records * RECORD_BYTES);
+    }
+
+    private boolean valid(int record, byte[] scratch, CRC32C crc) {
+        ByteBuffer segment = segment(record);
+        int offset = (record % SEGMENT_RECORDS) * RECORD_BYTES;
+        segment.get(offset, scratch, 0, RECORD_BYTES);
+        crc.reset();
+        crc.update(scratch, 0, CHECKED_BYTES);
+        return (int) crc.getValue() == segment.getInt(offset + CHECKED_BYTES);
+    }
+
+    // Queues a finished game; false once the store is closed or has failed. Caller holds the
+    // simulation still.
+    public boolean submit(GameSimulation simulation) {
+        return submit(simulation.getSeed(), simulation.getTick(), simulation.getScore(), simulation.getLevel());
+    }
+
+    public boolean submit(long seed, long ticks, int score, int level) {
+        Entry entry = new Entry(seed, System.currentTimeMillis(), (int) Math.min(ticks, Integer.MAX_VALUE), score, level);
+        synchronized (submitLock) {
+            if (!open) {
+                return false;
+            }
+            queue.add(entry); // Never after CLOSE, which is queued under the same lock
+            return true;
+        }
+    }
+
+    // The writer thread: take whatever is queued, append it, flush, index it
+    private void write() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        byte[] record = new byte[RECORD_BYTES];
+        CRC32C crc = new CRC32C();
+        boolean closing = false;
+        try {
+            while (!closing) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                int first;
+                synchronized (this) {
+                    first = count;
+                }
+                int end = first;
+                for (Entry entry : batch) {
+                    if (entry == CLOSE) {
+                        closing = true;
+                        break;
+                    }
+                    append(end++, entry, record, crc);
+                }
+                batch.clear();
+                flush(first, end);
+                synchronized (this) {
+                    for (int i = first; i < end; i++) {
+                        index(i);
+                    }
+                    count = end;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("Could not write high scores, no more will be saved: " + ex.getMessage());
+        } finally {
+            synchronized (submitLock) {
+                open = false;
+            }
+        }
+    }
+
+    private void append(int number, Entry entry, byte[] record, CRC32C crc) throws IOException {
+        if (number == capacity) {
+            grow();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        buffer.putLong(entry.seed).putLong(entry.time).putInt(entry.ticks).putInt(entry.score).putInt(entry.level);
+        crc.reset();
+        crc.update(record, 0, CHECKED_BYTES);
+        buffer.putInt((int) crc.getValue());
+        segmentOf(number).put((number % SEGMENT_RECORDS) * RECORD_BYTES, record);
+    }
+
+    // Forces records first..end-1 out to the file, segment by segment
+    private void flush(int first, int end) {
+        while (first < end) {
+            int segmentEnd = Math.min(end, (first / SEGMENT_RECORDS + 1) * SEGMENT_RECORDS);
+            int offset = (first % SEGMENT_RECORDS) * RECORD_BYTES;
+            segmentOf(first).force(offset, (segmentEnd - first) * RECORD_BYTES);
+            first = segmentEnd;
+        }
+    }
+
+    // Doubles the last segment, or starts a new one once it is full. Only the writer changes the
+    // segments; a mapping it replaces stays valid for anyone still holding it.
+    private void grow() throws IOException {
+        int segment = capacity / SEGMENT_RECORDS;
+        int records = Math.min(SEGMENT_RECORDS, Math.max(MIN_SEGMENT_RECORDS, 2 * (capacity % SEGMENT_RECORDS)));
+        MappedByteBuffer mapped = map(segment, records);
+        synchronized (this) {
+            if (segment == segments.size()) {
+                segments.add(mapped);
+            } else {
+                segments.set(segment, mapped);
+            }
+            capacity = segment * SEGMENT_RECORDS + records;
+        }
+    }
+
+    private synchronized MappedByteBuffer segmentOf(int record) {
+        return segments.get(record / SEGMENT_RECORDS);
+    }
+
+    // Same, for callers holding the lock
+    private MappedByteBuffer segment(int record) {
+        return segments.get(record / SEGMENT_RECORDS);
+    }
+
+    // Caller holds the lock
+    private void index(int record) {
+        // Best few: fill the heap, then replace its root whenever a record beats it
+        if (top.length > 0) {
+            if (topSize < top.length) {
+                top[topSize] = record;
+                siftUp(topSize++);
+            } else if (better(record, top[0])) {
+                top[0] = record;
+                siftDown(0);
+            }
+        }
+
+        // Each seed's best; records are indexed in order, so a later game must score higher
+        long seed = recordSeed(record);
+        int score = recordScore(record);
+        int slot = slot(seed);
+        long best = seeds[slot + 1];
+        if (best == 0) {
+            seeds[slot] = seed;
+            seeds[slot + 1] = ((long) (record + 1) << 32) | (score & 0xFFFFFFFFL);
+            if (++seedCount * 4 > seeds.length) {
+                growSeeds();
+            }
+        } else if (score > (int) best) {
+            seeds[slot + 1] = ((long) (record + 1) << 32) | (score & 0xFFFFFFFFL);
+        }
+    }
+
+    // Higher score wins; of equal scores the earlier game keeps its place
+    private boolean better(int a, int b) {
+        int scoreA = recordScore(a);
+        int scoreB = recordScore(b);
+        return scoreA > scoreB || (scoreA == scoreB && a < b);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(top[parent], top[i])) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int worst = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < topSize && better(top[worst], top[left])) {
+                worst = left;
+            }
+            if (right < topSize && better(top[worst], top[right])) {
+                worst = right;
+            }
+            if (worst == i) {
+                return;
+            }
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int t = top[i];
+        top[i] = top[j];
+        top[j] = t;
+    }
+
+    // Index in seeds of the seed's slot, or of the empty slot where it belongs
+    private int slot(long seed) {
+        int mask = seeds.length - 2;
+        int slot = (int) mix(seed) & mask;
+        while (seeds[slot + 1] != 0 && seeds[slot] != seed) {
+            slot = (slot + 2) & mask;
+        }
+        return slot;
+    }
+
+    private void growSeeds() {
+        long[] old = seeds;
+        seeds = new long[old.length * 2];
+        for (int i = 0; i < old.length; i += 2) {
+            if (old[i + 1] != 0) {
+                int slot = slot(old[i]);
+                seeds[slot] = old[i];
+                seeds[slot + 1] = old[i + 1];
+            }
+        }
+    }
+
+    // Seeds are often consecutive, so spread them before masking
+    private static long mix(long seed) {
+        long z = seed * 0x9E3779B97F4A7C15L;
+        return z ^ (z >>> 32);
+    }
+
+    private long recordSeed(int record) {
+        return segment(record).getLong((record % SEGMENT_RECORDS) * RECORD_BYTES);
+    }
+
+    private int recordScore(int record) {
+        return segment(record).getInt((record % SEGMENT_RECORDS) * RECORD_BYTES + 20);
+    }
+
+    private Entry entry(int record) {
+        ByteBuffer segment = segment(record);
+        int offset = (record % SEGMENT_RECORDS) * RECORD_BYTES;
+        return new Entry(segment.getLong(offset), segment.getLong(offset + 8), segment.getInt(offset + 16),
+                segment.getInt(offset + 20), segment.getInt(offset + 24));
+    }
+
+    // Games on disk; games still queued are not counted yet
+    public synchronized int getCount() {
+        return count;
+    }
+
+    // The best stored game on this seed's course, or null
+    public synchronized Entry getBest(long seed) {
+        int best = (int) (seeds[slot(seed) + 1] >>> 32);
+        return best == 0 ? null : entry(best - 1);
+    }
+
+    // The best stored games, best first
+    public synchronized List<Entry> getTop() {
+        Integer[] records = new Integer[topSize];
+        for (int i = 0; i < topSize; i++) {
+            records[i] = top[i];
+        }
+        Arrays.sort(records, (a, b) -> better(a, b) ? -1 : better(b, a) ? 1 : 0);
+        List<Entry> entries = new ArrayList<>(topSize);
+        for (int record : records) {
+            entries.add(entry(record));
+        }
+        return entries;
+    }
+
+    // 0 when nothing is stored
+    public synchronized int getBestScore() {
+        int best = 0;
+        for (int i = 0; i < topSize; i++) {
+            best = Math.max(best, recordScore(top[i]));
+        }
+        return best;
+    }
+
+    // Writes everything queued so far, then closes the file. Closing again does nothing.
+    @Override
+    public void close() throws IOException {
+        synchronized (submitLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            open = false;
+            queue.add(CLOSE);
+        }
+        if (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        lock.release();
+        channel.close();
+    }
+
+    // Appends records synthetic games, closes the log and checks that reopening it rebuilds the
+    // same index; then tears the last record and checks it is dropped, and that a new log stays
+    // small.
+    // java HighScoreStore [records] [file]
+    public static void main(String[] args) throws IOException {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        File file = args.length > 1 ? new File(args[1]) : File.createTempFile("scores", ".fhs");
+        file.delete();
+        int seeds = Math.max(1, records / 4);
+        SplittableRandom random = new SplittableRandom(1);
+        Map<Long, Integer> best = new HashMap<>();
+        long[] games = new long[records];
+        int[] scores = new int[records];
+        for (int i = 0; i < records; i++) {
+            games[i] = random.nextInt(seeds);
+            scores[i] = random.nextInt(1 + random.nextInt(200));
+            best.merge(games[i], scores[i], Math::max);
+        }
+        boolean ok = true;
+
+        HighScoreStore store = new HighScoreStore(file);
+        long start = System.nanoTime();
+        for (int i = 0; i < records; i++) {
+            store.submit(games[i], 50L * scores[i] + 25, scores[i], scores[i] / 5 + 1);
+        }
+        long submitted = System.nanoTime();
+        store.close();
+        long written = System.nanoTime();
+        System.out.printf("%d records: submit %.0f ns each, written and flushed at %.1fM records/s, %.1f MB%n",
+                records, (submitted - start) / (double) records, records / ((written - start) / 1e9) / 1e6,
+                file.length() / 1e6);
+
+        start = System.nanoTime();
+        store = new HighScoreStore(file);
+        System.out.printf("Reopened in %.0f ms%n", (System.nanoTime() - start) / 1e6);
+        int[] sorted = scores.clone();
+        Arrays.sort(sorted);
+        List<Entry> top = store.getTop();
+        for (int i = 0; i < top.size(); i++) {
+            ok &= top.get(i).getScore() == sorted[records - 1 - i];
+        }
+        ok &= store.getCount() == records && top.size() == Math.min(DEFAULT_TOP, records);
+        for (Map.Entry<Long, Integer> seed : best.entrySet()) {
+            Entry entry = store.getBest(seed.getKey());
+            ok &= entry != null && entry.getScore() == seed.getValue() && entry.getSeed() == seed.getKey();
+        }
+        ok &= store.getBest(seeds) == null;
+        System.out.println("Top: " + (top.isEmpty() ? "none" : top.get(0)) + "; index " + (ok ? "matches" : "DIFFERS"));
+
+        int lookups = 1_000_000;
+        long found = 0;
+        for (int pass = 0; pass < 2; pass++) { // The first pass warms up the JIT
+            start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                Entry entry = store.getBest(random.nextInt(seeds));
+                found += entry == null ? 0 : entry.getScore();
+            }
+        }
+        System.out.printf("Best score for a seed: %.0f ns per lookup (%d)%n",
+                (System.nanoTime() - start) / (double) lookups, found % 10);
+        store.close();
+
+        // A crash halfway through writing a record leaves part of it on disk
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(HEADER_BYTES + (long) records * RECORD_BYTES);
+            raw.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10});
+        }
+        store = new HighScoreStore(file);
+        boolean torn = store.getCount() == records;
+        store.submit(seeds, 100, 2, 1);
+        store.close();
+        store = new HighScoreStore(file);
+        torn &= store.getCount() == records + 1 && store.getBest(seeds).getScore() == 2;
+        store.close();
+        System.out.println("Torn record " + (torn ? "dropped and overwritten" : "NOT RECOVERED"));
+
+        // A log nobody has played into is just its header, and one game maps only the first step
+        file.delete();
+        store = new HighScoreStore(file);
+        store.close();
+        store.close();
+        long empty = file.length();
+        store = new HighScoreStore(file);
+        store.submit(1, 100, 2, 1);
+        store.close();
+        long one = file.length();
+        boolean small = empty == HEADER_BYTES && one == HEADER_BYTES + MIN_SEGMENT_RECORDS * RECORD_BYTES;
+        System.out.println("New log: " + empty + " bytes, " + one + " after one game" + (small ? "" : " (TOO BIG)"));
+        if (args.length < 2) {
+            file.delete();
+        }
+        if (!ok || !torn || !small) {
+            System.exit(1);
+        }
+    }
+}
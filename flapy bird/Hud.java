@@ -0,0 +1,114 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+// Score, level and the centred banners. The score and level text is rendered into an image that
+// is only redrawn when one of them changes; banner strings and their widths are built once per
+// level rather than every frame.
+public class Hud {
+    private static final int GAME_OVER_DIM = 150;
+
+    private final double scale;
+    private final RenderResources resources;
+
+    private BufferedImage scoreImage;
+    private int imageX; // Screen position of the image's top-left corner
+    private int imageY;
+    private int imageScore = -1;
+    private int imageLevel = -1;
+
+    private int bannerLevel = -1;
+    private String levelUpText;
+    private int levelUpWidth;
+    private String finalLevelText;
+    private int finalLevelWidth;
+    private int gameOverWidth = -1;
+    private int restartWidth;
+    private int bannerBest = -1;
+    private String bestText;
+    private int bestWidth;
+
+    public Hud(double scale) {
+        this.scale = scale;
+        this.resources = RenderResources.forScale(scale);
+    }
+
+    // Score and level in the top-left corner
+    public void drawScore(Graphics2D g2d, int score, int level) {
+        if (score != imageScore || level != imageLevel) {
+            renderScore(g2d, score, level);
+        }
+        g2d.drawImage(scoreImage, imageX, imageY, null);
+    }
+
+    private void renderScore(Graphics2D g2d, int score, int level) {
+        String scoreText = "Score: " + score;
+        String levelText = "Level: " + level;
+        FontMetrics fm = g2d.getFontMetrics(resources.getHudFont());
+        // Only as large as the text, since every pixel of the image is blended each frame
+        imageX = (int) (20 * scale);
+        imageY = (int) (30 * scale) - fm.getAscent();
+        int width = Math.max(fm.stringWidth(scoreText), fm.stringWidth(levelText)) + 2;
+        int height = (int) (60 * scale) + fm.getDescent() - imageY;
+
+        if (scoreImage == null || scoreImage.getWidth() < width || scoreImage.getHeight() < height) {
+            scoreImage = SpriteCache.createImage(width, height, Transparency.TRANSLUCENT);
+        }
+        Graphics2D g = scoreImage.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, scoreImage.getWidth(), scoreImage.getHeight());
+        g.setComposite(AlphaComposite.SrcOver);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(Color.WHITE);
+        g.setFont(resources.getHudFont());
+        g.drawString(scoreText, 0, (int) (30 * scale) - imageY);
+        g.drawString(levelText, 0, (int) (60 * scale) - imageY);
+        g.dispose();
+
+        imageScore = score;
+        imageLevel = level;
+    }
+
+    // "Level N!" fading out as timer counts down
+    public void drawLevelUp(Graphics2D g2d, int level, int timer, int width, int height) {
+        updateBanners(g2d, level);
+        g2d.setColor(RenderResources.white(timer * 4));
+        g2d.setFont(resources.getBannerFont());
+        g2d.drawString(levelUpText, width / 2 - levelUpWidth / 2, height / 2);
+    }
+
+    // best is the best stored score, or negative when scores are not kept
+    public void drawGameOver(Graphics2D g2d, int level, int best, int width, int height) {
+        updateBanners(g2d, level);
+        g2d.setColor(RenderResources.black(GAME_OVER_DIM));
+        g2d.fillRect(0, 0, width, height);
+        g2d.setColor(Color.WHITE);
+        g2d.setFont(resources.getBannerFont());
+        g2d.drawString("Game Over!", width / 2 - gameOverWidth / 2, height / 2);
+
+        g2d.setFont(resources.getHudFont());
+        g2d.drawString("Press SPACE to restart", width / 2 - restartWidth / 2, height / 2 + (int) (40 * scale));
+        g2d.drawString(finalLevelText, width / 2 - finalLevelWidth / 2, height / 2 + (int) (80 * scale));
+        if (best >= 0) {
+            if (best != bannerBest) {
+                bestText = "Best: " + best;
+                bestWidth = g2d.getFontMetrics(resources.getHudFont()).stringWidth(bestText);
+                bannerBest = best;
+            }
+            g2d.drawString(bestText, width / 2 - bestWidth / 2, height / 2 + (int) (120 * scale));
+        }
+    }
+
+    private void updateBanners(Graphics2D g2d, int level) {
+        if (gameOverWidth < 0) {
+            gameOverWidth = g2d.getFontMetrics(resources.getBannerFont()).stringWidth("Game Over!");
+            restartWidth = g2d.getFontMetrics(resources.getHudFont()).stringWidth("Press SPACE to restart");
+        }
+        if (level != bannerLevel) {
+            levelUpText = "Level " + level + "!";
+            levelUpWidth = g2d.getFontMetrics(resources.getBannerFont()).stringWidth(levelUpText);
+            finalLevelText = "Final Level: " + level;
+            finalLevelWidth = g2d.getFontMetrics(resources.getHudFont()).stringWidth(finalLevelText);
+            bannerLevel = level;
+        }
+    }
+}
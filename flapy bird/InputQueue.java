@@ -0,0 +1,131 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Inputs handed from the thread that receives them (the EDT) to the game loop thread, which
+// applies them at the next tick boundary. A single-producer, single-consumer ring: each side
+// writes only its own counter and publishes it with a release store, so neither side takes a
+// lock or waits on the other. Each side also caches the other's counter, and only reads it
+// again when the ring looks full or empty.
+//
+// Every event carries the System.nanoTime() it was received at, so the game can measure how
+// long an input took to reach the simulation and the screen.
+public class InputQueue {
+    public static final int JUMP = 0; // Jump, or start a new game when it is over
+
+    private final int mask;
+    private final int[] kinds;
+    private final long[] times;
+    private final AtomicLong head = new AtomicLong(); // Next event to read; written by the consumer
+    private final AtomicLong tail = new AtomicLong(); // Next slot to fill; written by the producer
+
+    // Producer's side
+    private long cachedHead;
+    // Consumer's side
+    private long cachedTail;
+    private int kind;
+    private long time;
+
+    // capacity is rounded up to a power of two
+    public InputQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1);
+        mask = size - 1;
+        kinds = new int[size];
+        times = new long[size];
+    }
+
+    // Producer only. Returns false, dropping the event, when the ring is full.
+    public boolean offer(int kind, long nanoTime) {
+        long t = tail.getPlain();
+        if (t - cachedHead > mask) {
+            cachedHead = head.getAcquire();
+            if (t - cachedHead > mask) {
+                return false;
+            }
+        }
+        int slot = (int) t & mask;
+        kinds[slot] = kind;
+        times[slot] = nanoTime;
+        tail.setRelease(t + 1);
+        return true;
+    }
+
+    // Consumer only. Takes the oldest event, readable through kind() and time() until the next
+    // poll; false when there is none.
+    public boolean poll() {
+        long h = head.getPlain();
+        if (h == cachedTail) {
+            cachedTail = tail.getAcquire();
+            if (h == cachedTail) {
+                return false;
+            }
+        }
+        int slot = (int) h & mask;
+        kind = kinds[slot];
+        time = times[slot];
+        head.setRelease(h + 1);
+        return true;
+    }
+
+    public int kind() {
+        return kind;
+    }
+
+    // When the event was received, in System.nanoTime()
+    public long time() {
+        return time;
+    }
+
+    // java InputQueue [events]
+    // Pushes events through the ring between two threads: first as fast as possible, checking
+    // none is lost or reordered, then one every 20 us or so to measure the handoff latency
+    public static void main(String[] args) throws InterruptedException {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+        InputQueue queue = new InputQueue(64);
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < events; i++) {
+                while (!queue.offer(i & 0xff, i)) {
+                    Thread.yield(); // Lets the other side run on a single core
+                }
+            }
+        }, "input-producer");
+        long start = System.nanoTime();
+        producer.start();
+        boolean ok = true;
+        for (int i = 0; i < events; i++) {
+            while (!queue.poll()) {
+                Thread.yield();
+            }
+            if (queue.kind() != (i & 0xff) || queue.time() != i) {
+                ok = false;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        producer.join();
+        System.out.printf("%d events: %.1fM events/s, %s%n", events, events * 1e3 / elapsed,
+                ok ? "in order, none lost" : "LOST OR REORDERED");
+
+        int paced = 100_000;
+        Thread pacer = new Thread(() -> {
+            for (int i = 0; i < paced; i++) {
+                LockSupport.parkNanos(20_000);
+                queue.offer(JUMP, System.nanoTime());
+            }
+        }, "input-producer");
+        pacer.start();
+        LatencyHistogram handoff = new LatencyHistogram();
+        for (int i = 0; i < paced; i++) {
+            while (!queue.poll()) {
+                Thread.yield();
+            }
+            handoff.record(System.nanoTime() - queue.time());
+        }
+        pacer.join();
+        System.out.printf("Handoff: p50 %d ns, p99 %d ns, p99.9 %d ns, max %.1f us%n",
+                handoff.getValueAtPercentile(50), handoff.getValueAtPercentile(99),
+                handoff.getValueAtPercentile(99.9), handoff.getMax() / 1e3);
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+}
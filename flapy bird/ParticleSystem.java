@@ -0,0 +1,121 @@
+import java.awt.*;
+import java.nio.ByteBuffer;
+
+// Fixed-capacity particle storage kept as parallel primitive arrays. Nothing is allocated after
+// construction: dead particles are swap-removed and colours come from per-life lookup tables.
+public class ParticleSystem {
+    static final int MAX_LIFE = 25;
+
+    // Appearance depends only on remaining life, so it is computed once for every value
+    private static final Color[] FILL_COLORS = new Color[MAX_LIFE + 1];
+    private static final Color[] BORDER_COLORS = new Color[MAX_LIFE + 1];
+    private static final int[] SIZES = new int[MAX_LIFE + 1];
+
+    static {
+        for (int life = 0; life <= MAX_LIFE; life++) {
+            float alpha = (float) life / MAX_LIFE;
+            int fillAlpha = (int) (alpha * 200);
+            FILL_COLORS[life] = new Color(255, 255, 255, fillAlpha);
+            BORDER_COLORS[life] = new Color(0, 0, 0, (int) (fillAlpha * 0.5));
+            SIZES[life] = (int) (4 * (1.0 + (1.0 - alpha) * 0.5));
+        }
+    }
+
+    private final double[] x;
+    private final double[] y;
+    private final double[] vx;
+    private final double[] vy;
+    private final int[] life;
+    private int count;
+
+    public ParticleSystem(int capacity) {
+        x = new double[capacity];
+        y = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+        life = new int[capacity];
+    }
+
+    // Returns false when the system is full; the particle is simply not shown
+    public boolean spawn(double px, double py, double pvx, double pvy) {
+        if (count == life.length) {
+            return false;
+        }
+        x[count] = px;
+        y[count] = py;
+        vx[count] = pvx;
+        vy[count] = pvy;
+        life[count] = MAX_LIFE;
+        count++;
+        return true;
+    }
+
+    public void update() {
+        for (int i = count - 1; i >= 0; i--) {
+            x[i] += vx[i];
+            y[i] += vy[i];
+            vy[i] += 0.15;
+            if (--life[i] <= 0) {
+                remove(i);
+            }
+        }
+    }
+
+    // Move the last particle into the freed slot; order doesn't matter for drawing
+    private void remove(int i) {
+        int last = --count;
+        x[i] = x[last];
+        y[i] = y[last];
+        vx[i] = vx[last];
+        vy[i] = vy[last];
+        life[i] = life[last];
+    }
+
+    // zoom is window pixels per world unit
+    public void draw(Graphics2D g, double zoom) {
+        for (int i = 0; i < count; i++) {
+            int size = (int) (SIZES[life[i]] * zoom);
+            int left = (int) (x[i] * zoom) - size / 2;
+            int top = (int) (y[i] * zoom) - size / 2;
+            g.setColor(FILL_COLORS[life[i]]);
+            g.fillOval(left, top, size, size);
+            g.setColor(BORDER_COLORS[life[i]]);
+            g.drawOval(left, top, size, size);
+        }
+    }
+
+    // Live particles only
+    void save(ByteBuffer out) {
+        out.putInt(count);
+        for (int i = 0; i < count; i++) {
+            out.putDouble(x[i]).putDouble(y[i]).putDouble(vx[i]).putDouble(vy[i]).putInt(life[i]);
+        }
+    }
+
+    void restore(ByteBuffer in) {
+        int saved = in.getInt();
+        if (saved > life.length) {
+            throw new IllegalArgumentException("Snapshot has " + saved + " particles, room for " + life.length);
+        }
+        count = saved;
+        for (int i = 0; i < count; i++) {
+            x[i] = in.getDouble();
+            y[i] = in.getDouble();
+            vx[i] = in.getDouble();
+            vy[i] = in.getDouble();
+            life[i] = in.getInt();
+        }
+    }
+
+    int snapshotSize() {
+        return Integer.BYTES + count * (4 * Double.BYTES + Integer.BYTES);
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    public int size() {
+        return count;
+    }
+}
@@ -1,9 +1,12 @@
 import java.awt.*;
 import java.awt.geom.Area;
+import java.awt.geom.Line2D;
 import java.awt.geom.Rectangle2D;
+import java.nio.ByteBuffer;
 
 public class Pipe {
     private double x;
+    private double prevX; // Position at the start of the last tick, for render interpolation
     private double y; // Represents the y-coordinate of the top of the gap
     private double width;
     private double gap;
@@ -13,11 +16,18 @@ public class Pipe {
     public static final double PIPE_WIDTH = 70;
     private static final double PIPE_GAP = 200;
     private static final double BASE_SPEED = 2.0;
+    static final int CAP_OVERHANG = 10; // Caps stick out this far on each side, in world units
+    static final int CAP_HEIGHT = 30;
+    private static final Color PIPE_BASE_COLOR = new Color(176, 252, 56); // #B0FC38
+    private static final Color PIPE_SHADE_COLOR = new Color(140, 200, 45); // A darker shade for gradient
+    private static final Color CAP_BASE_COLOR = new Color(60, 176, 67); // #3CB043
+    private static final Color CAP_SHADE_COLOR = new Color(40, 140, 50); // A darker shade for gradient
     private boolean passed;
     private double topPipeHeight; // Store the height of the top pipe
 
     public Pipe(double x, double gapY, double width, double gap, double speed, double gameHeight, double groundHeight) {
         this.x = x;
+        this.prevX = x;
         this.y = gapY; // y is the top of the gap
         this.width = width;
         this.gap = gap;
@@ -31,7 +41,15 @@ public class Pipe {
         this.boundsBottom = new Rectangle2D.Double(x, y + gap, width, gameHeight - (y + gap) - groundHeight);
     }
 
+    // Empty pipe for PipeRing to hand out; reset() gives it a position before use
+    Pipe(double width) {
+        this.width = width;
+        this.boundsTop = new Rectangle2D.Double();
+        this.boundsBottom = new Rectangle2D.Double();
+    }
+
     public void update() {
+        prevX = x;
         x -= speed;
         // Update bounds based on new x position
         boundsTop.setRect(x, 0, width, topPipeHeight);
@@ -39,16 +57,21 @@ public class Pipe {
     }
 
     // Reset method to reuse pipes, takes game dimensions and ground height
-    public void reset(int gameWidth, int gameHeight, double gap, double speed, double groundHeight) {
+    public void reset(int gameWidth, int gameHeight, double gap, double speed, double groundHeight,
+            double scale, GameRandom random) {
+        reset(gameWidth, gameHeight, gap, speed, groundHeight, scale, random.nextDouble());
+    }
+
+    // As above with the gap at position (0 highest, 1 lowest) instead of a random one
+    public void reset(int gameWidth, int gameHeight, double gap, double speed, double groundHeight,
+            double scale, double position) {
         this.x = gameWidth; // Start off screen to the right
+        this.prevX = x;
         this.gap = gap;
         this.speed = speed;
         this.passed = false;
 
-        // Calculate a new random position for the gap (and thus the pipes)
-        double minY = 50; // Minimum height for the top pipe
-        double maxY = gameHeight - groundHeight - gap - 50; // Maximum height for the top pipe
-        this.y = minY + Math.random() * (maxY - minY); // y is the top of the gap
+        this.y = gapTop(gameHeight, gap, groundHeight, scale, position); // y is the top of the gap
         this.topPipeHeight = this.y; // The top of the gap is the bottom of the top pipe
 
         // Update bounds with new position and calculated heights
@@ -56,61 +79,82 @@ public class Pipe {
         boundsBottom.setRect(x, this.y + gap, width, gameHeight - (this.y + gap) - groundHeight);
     }
 
-    public void draw(Graphics2D g2d) {
-        // Set stroke for borders
-        g2d.setStroke(new BasicStroke(2));
-
-        // Define colors with shades for gradient
-        Color pipeBaseColor = new Color(176, 252, 56); // #B0FC38
-        Color pipeShadeColor = new Color(140, 200, 45); // A darker shade for gradient
-        Color capBaseColor = new Color(60, 176, 67); // #3CB043
-        Color capShadeColor = new Color(40, 140, 50); // A darker shade for gradient
-
-        // Draw top pipe with gradient
-        GradientPaint topPipeGradient = new GradientPaint(
-                (float) x, (float) 0,
-                pipeBaseColor,
-                (float) x + (float) width, (float) topPipeHeight,
-                pipeShadeColor);
-        g2d.setPaint(topPipeGradient);
-        g2d.fill(boundsTop);
-        g2d.setColor(Color.BLACK);
-        g2d.draw(boundsTop);
-
-        // Draw top pipe cap with gradient
-        GradientPaint topCapGradient = new GradientPaint(
-                (float) x - 10, (float) topPipeHeight - 30,
-                capBaseColor,
-                (float) x + (float) width + 10, (float) topPipeHeight,
-                capShadeColor);
-        g2d.setPaint(topCapGradient);
-        Rectangle2D topCapBounds = new Rectangle2D.Double(x - 10, topPipeHeight - 30, width + 20, 30);
-        g2d.fill(topCapBounds);
-        g2d.setColor(Color.BLACK);
-        g2d.draw(topCapBounds);
-
-        // Draw bottom pipe with gradient
-        GradientPaint bottomPipeGradient = new GradientPaint(
-                (float) x, (float) y + (float) gap,
-                pipeBaseColor,
-                (float) x + (float) width, (float) y + (float) gap + (float) boundsBottom.getHeight(),
-                pipeShadeColor);
-        g2d.setPaint(bottomPipeGradient);
-        g2d.fill(boundsBottom);
+    // Top of a gap at position in [0, 1) between the highest and lowest gaps allowed
+    static double gapTop(int gameHeight, double gap, double groundHeight, double scale, double position) {
+        double minY = 50 * scale; // Minimum height for the top pipe
+        double maxY = gameHeight - groundHeight - gap - (50 * scale); // Maximum height for the top pipe
+        return minY + position * (maxY - minY);
+    }
+
+    // zoom is window pixels per world unit
+    public void draw(Graphics2D g2d, double alpha, double zoom) {
+        double drawX = prevX + (x - prevX) * alpha;
+        double bottomY = y + gap;
+        SpriteCache.forScale(width / PIPE_WIDTH * zoom).drawPipe(g2d, drawX * zoom, topPipeHeight * zoom,
+                bottomY * zoom, boundsBottom.getHeight() * zoom);
+    }
+
+    // Pipe body of the given size with its top-left corner at the origin
+    static void paintBody(Graphics2D g2d, double width, double height) {
+        GradientPaint bodyGradient = new GradientPaint(
+                0f, 0f, PIPE_BASE_COLOR,
+                (float) width, (float) height, PIPE_SHADE_COLOR);
+        g2d.setPaint(bodyGradient);
+        g2d.fill(new Rectangle2D.Double(0, 0, width, height));
+
+        // Only the sides get a border; both ends are hidden under a cap or the ground
         g2d.setColor(Color.BLACK);
-        g2d.draw(boundsBottom);
-
-        // Draw bottom pipe cap with gradient
-        GradientPaint bottomCapGradient = new GradientPaint(
-                (float) x - 10, (float) y + (float) gap,
-                capBaseColor,
-                (float) x + (float) width + 10, (float) y + (float) gap + 30,
-                capShadeColor);
-        g2d.setPaint(bottomCapGradient);
-        Rectangle2D bottomCapBounds = new Rectangle2D.Double(x - 10, y + gap, width + 20, 30);
-        g2d.fill(bottomCapBounds);
+        g2d.setStroke(RenderResources.OUTLINE);
+        g2d.draw(new Line2D.Double(0, 0, 0, height));
+        g2d.draw(new Line2D.Double(width, 0, width, height));
+    }
+
+    // Pipe cap for a pipe of the given width, with the cap's top-left corner at the origin. The
+    // overhang and height are world units, so they grow with scale like the pipe does.
+    static void paintCap(Graphics2D g2d, double width, double scale) {
+        double capWidth = width + CAP_OVERHANG * 2 * scale;
+        double capHeight = CAP_HEIGHT * scale;
+        GradientPaint capGradient = new GradientPaint(
+                0f, 0f, CAP_BASE_COLOR,
+                (float) capWidth, (float) capHeight, CAP_SHADE_COLOR);
+        Rectangle2D cap = new Rectangle2D.Double(0, 0, capWidth, capHeight);
+        g2d.setPaint(capGradient);
+        g2d.fill(cap);
         g2d.setColor(Color.BLACK);
-        g2d.draw(bottomCapBounds);
+        g2d.setStroke(RenderResources.OUTLINE);
+        g2d.draw(cap);
+    }
+
+    static final int SNAPSHOT_BYTES = 7 * Double.BYTES + 1;
+
+    // The width is fixed by the PipeRing that owns the pipe
+    void save(ByteBuffer out) {
+        out.putDouble(x).putDouble(prevX).putDouble(y).putDouble(gap).putDouble(speed)
+                .putDouble(topPipeHeight).putDouble(boundsBottom.getHeight()).put((byte) (passed ? 1 : 0));
+    }
+
+    void restore(ByteBuffer in) {
+        x = in.getDouble();
+        prevX = in.getDouble();
+        y = in.getDouble();
+        gap = in.getDouble();
+        speed = in.getDouble();
+        topPipeHeight = in.getDouble();
+        double bottomHeight = in.getDouble();
+        passed = in.get() != 0;
+        boundsTop.setRect(x, 0, width, topPipeHeight);
+        boundsBottom.setRect(x, y + gap, width, bottomHeight);
+    }
+
+    // Puts the pipe where a StateStreamDecoder says it is
+    void setStreamedState(double x, double prevX, double gapY, double gap, double bottomHeight) {
+        this.x = x;
+        this.prevX = prevX;
+        this.y = gapY;
+        this.gap = gap;
+        this.topPipeHeight = gapY;
+        boundsTop.setRect(x, 0, width, topPipeHeight);
+        boundsBottom.setRect(x, gapY + gap, width, bottomHeight);
     }
 
     public double getX() {
@@ -121,6 +165,16 @@ public class Pipe {
         return width;
     }
 
+    // Distance moved every tick
+    double getSpeed() {
+        return speed;
+    }
+
+    // Where the pipe was before its last update()
+    public double getPrevX() {
+        return prevX;
+    }
+
     public Rectangle2D getBoundsTop() {
         return boundsTop;
     }
@@ -145,4 +199,9 @@ public class Pipe {
     public double getGapHeight() {
         return gap;
     }
+
+    // The bottom pipe runs from the bottom of the gap down to the ground
+    public double getBottomHeight() {
+        return boundsBottom.getHeight();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,241 @@
+import java.nio.ByteBuffer;
+
+// The scrolling pipe sequence of one game: spawning, recycling, scoring and the level-ups that
+// speed it up. It depends on the bird only through the bird's fixed x position, so one course can
+// be shared by a single bird (GameSimulation) or a whole population (PopulationWorld).
+//
+// In CourseMode.REACHABLE the gaps come from the CourseGenerator for the seed, which works them
+// out on background threads ahead of play; spawning a pipe just reads the next one, unless the
+// game has outrun the background and has to wait for it.
+public class PipeCourse {
+    private static final CourseMode[] COURSE_MODES = CourseMode.values(); // values() copies
+    private static final double INITIAL_PIPE_SPEED = 3.0;
+    private static final double PIPE_GAP_RATIO = 0.25; // 25% of screen height
+    private static final double INITIAL_PIPE_SPACING_RATIO = 0.4; // 40% of screen width
+    private static final int LEVEL_UP_SCORE = 5;
+    private static final double SPEED_INCREASE = 0.5;
+    private static final int PIPE_CAPACITY = 12; // At minimum spacing about 7 pipes are alive at once
+    static final int MAX_SNAPSHOT_BYTES = 2 * Long.BYTES + 1 + 6 * Integer.BYTES + 2 * Double.BYTES
+            + PIPE_CAPACITY * Pipe.SNAPSHOT_BYTES;
+
+    private final int width;
+    private final int height;
+    private final int groundHeight;
+    private final double scale;
+    private final PipeRing pipes;
+    private final GameRandom random; // Gameplay stream: everything that can change the outcome
+
+    private CourseMode mode;
+    private CourseGenerator generator; // For seed in REACHABLE mode, otherwise null
+    private long seed;
+    private int spawned; // Pipes added since reset
+    private int score;
+    private int level;
+    private double pipeSpeed;
+    private double pipeSpacing;
+    private Pipe lastPassed;
+    private int nextIndex; // Ring index of the first pipe the bird has not passed
+
+    public PipeCourse(int width, int height, int groundHeight, double scale) {
+        this.width = width;
+        this.height = height;
+        this.groundHeight = groundHeight;
+        this.scale = scale;
+        this.pipes = new PipeRing(PIPE_CAPACITY, Pipe.PIPE_WIDTH * scale);
+        this.random = new GameRandom(0);
+        this.mode = CourseMode.RANDOM; // REACHABLE costs far more than a headless tick, so games opt in
+    }
+
+    // Takes effect from the next reset; REACHABLE needs the standard world
+    public void setMode(CourseMode mode) {
+        if (mode == CourseMode.REACHABLE && !isStandardWorld()) {
+            throw new IllegalArgumentException("Reachable courses need a " + GameSimulation.WORLD_WIDTH + "x"
+                    + GameSimulation.WORLD_HEIGHT + " world");
+        }
+        this.mode = mode;
+    }
+
+    public CourseMode getMode() {
+        return mode;
+    }
+
+    // Starts on seed's course in the background if a reset onto it would need one
+    void prepare(long seed) {
+        if (mode == CourseMode.REACHABLE) {
+            CourseGenerator.prepare(seed);
+        }
+    }
+
+    private boolean isStandardWorld() {
+        return width == GameSimulation.WORLD_WIDTH && height == GameSimulation.WORLD_HEIGHT;
+    }
+
+    public void reset(long seed) {
+        random.setState(seed);
+        useGenerator(seed);
+        spawned = 0;
+        pipes.clear();
+        score = 0;
+        level = 1;
+        pipeSpeed = INITIAL_PIPE_SPEED * scale;
+        pipeSpacing = width * INITIAL_PIPE_SPACING_RATIO;
+        lastPassed = null;
+        nextIndex = 0;
+        addPipe();
+    }
+
+    // Move every pipe one tick, score those whose right edge went past birdX, recycle the ones
+    // that left the screen and spawn new ones. Returns how many pipes were passed this tick.
+    public int update(double birdX) {
+        for (int i = 0; i < pipes.size(); i++) {
+            pipes.get(i).update();
+        }
+
+        // Pipes stay ordered by x, so they are passed in ring order: only the next one can score
+        int passed = 0;
+        while (nextIndex < pipes.size()) {
+            Pipe pipe = pipes.get(nextIndex);
+            if (pipe.getX() + pipe.getWidth() >= birdX) {
+                break;
+            }
+            pipe.setPassed(true);
+            score++;
+            passed++;
+            lastPassed = pipe;
+            nextIndex++;
+
+            // Check for level up
+            if (score > 0 && score % LEVEL_UP_SCORE == 0) {
+                levelUp();
+            }
+        }
+
+        // Recycle pipes that are off screen; the leftmost ones always leave first
+        while (!pipes.isEmpty() && pipes.first().getX() + pipes.first().getWidth() < 0) {
+            pipes.removeFirst();
+            nextIndex = Math.max(0, nextIndex - 1);
+        }
+
+        // Add new pipes
+        if (pipes.isEmpty() || pipes.last().getX() < width - pipeSpacing) {
+            addPipe();
+        }
+        return passed;
+    }
+
+    // Ring index of the first pipe that may overlap [left, right) at some point during the last
+    // tick; candidates run from here while their x is below right. Only pipes around the next
+    // unpassed one can reach the bird, so this looks at one or two pipes rather than all of them.
+    public int firstCandidate(double left) {
+        int i = Math.min(nextIndex, pipes.size());
+        while (i > 0) {
+            Pipe previous = pipes.get(i - 1);
+            if (previous.getPrevX() + previous.getWidth() <= left) {
+                break;
+            }
+            i--;
+        }
+        return i;
+    }
+
+    private void addPipe() {
+        int pipeGap = (int) (height * PIPE_GAP_RATIO);
+
+        // Reuse a recycled Pipe; reset() places it off screen right with a random or generated gap
+        if (generator == null) {
+            pipes.add().reset(width, height, pipeGap, pipeSpeed, groundHeight, scale, random);
+        } else {
+            pipes.add().reset(width, height, pipeGap, pipeSpeed, groundHeight, scale, generator.position(spawned));
+        }
+        spawned++;
+    }
+
+    // Courses are shared by seed, so restoring snapshots of the same game looks nothing up
+    private void useGenerator(long seed) {
+        if (mode == CourseMode.RANDOM) {
+            generator = null;
+        } else if (generator == null || this.seed != seed) {
+            generator = CourseGenerator.forSeed(seed);
+        }
+        this.seed = seed;
+    }
+
+    private void levelUp() {
+        level++;
+        pipeSpeed += SPEED_INCREASE * scale;
+        pipeSpacing = Math.max(width * 0.2, width * INITIAL_PIPE_SPACING_RATIO - (level - 1) * 20 * scale);
+    }
+
+    void save(ByteBuffer out) {
+        int lastPassedIndex = -1; // Only read in the tick it was set, so a recycled pipe can be dropped
+        for (int i = 0; i < pipes.size(); i++) {
+            if (pipes.get(i) == lastPassed) {
+                lastPassedIndex = i;
+            }
+        }
+        out.putLong(seed).put((byte) mode.ordinal()).putInt(spawned)
+                .putLong(random.getState()).putInt(score).putInt(level).putDouble(pipeSpeed).putDouble(pipeSpacing)
+                .putInt(nextIndex).putInt(lastPassedIndex).putInt(pipes.size());
+        for (int i = 0; i < pipes.size(); i++) {
+            pipes.get(i).save(out);
+        }
+    }
+
+    // Reuses the ring's pipes
+    void restore(ByteBuffer in) {
+        long seed = in.getLong();
+        mode = COURSE_MODES[in.get()];
+        useGenerator(seed);
+        spawned = in.getInt();
+        random.setState(in.getLong());
+        score = in.getInt();
+        level = in.getInt();
+        pipeSpeed = in.getDouble();
+        pipeSpacing = in.getDouble();
+        nextIndex = in.getInt();
+        int lastPassedIndex = in.getInt();
+        int count = in.getInt();
+        pipes.clear();
+        for (int i = 0; i < count; i++) {
+            pipes.add().restore(in);
+        }
+        lastPassed = lastPassedIndex < 0 ? null : pipes.get(lastPassedIndex);
+    }
+
+    // Score and level from a StateStreamDecoder; the pipes are set one by one through getPipes()
+    void setStreamedState(int score, int level) {
+        this.score = score;
+        this.level = level;
+    }
+
+    int snapshotSize() {
+        return 2 * Long.BYTES + 1 + 6 * Integer.BYTES + 2 * Double.BYTES + pipes.size() * Pipe.SNAPSHOT_BYTES;
+    }
+
+    // The first pipe not yet passed; there is always one on screen
+    public Pipe getNextPipe() {
+        return nextIndex < pipes.size() ? pipes.get(nextIndex) : pipes.last();
+    }
+
+    public PipeRing getPipes() {
+        return pipes;
+    }
+
+    // Pipes added since reset, counting those already recycled
+    int getSpawned() {
+        return spawned;
+    }
+
+    // The most recently passed pipe, e.g. to place a score popup
+    public Pipe getLastPassed() {
+        return lastPassed;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+}
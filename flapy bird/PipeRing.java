@@ -0,0 +1,71 @@
+// Pipes always spawn on the right and leave on the left, so they form a queue ordered by x.
+// The ring keeps every Pipe it ever created and hands despawned ones back out on the next spawn.
+public class PipeRing {
+    private Pipe[] pipes;
+    private final double pipeWidth;
+    private int head; // Index of the oldest (leftmost) pipe
+    private int size;
+
+    public PipeRing(int capacity, double pipeWidth) {
+        this.pipeWidth = pipeWidth;
+        this.pipes = new Pipe[capacity];
+        for (int i = 0; i < capacity; i++) {
+            pipes[i] = new Pipe(pipeWidth);
+        }
+    }
+
+    // Append a pipe on the right and return it for the caller to reset()
+    public Pipe add() {
+        if (size == pipes.length) {
+            grow();
+        }
+        Pipe pipe = pipes[(head + size) % pipes.length];
+        size++;
+        return pipe;
+    }
+
+    // Release the oldest pipe back to the pool
+    public void removeFirst() {
+        head = (head + 1) % pipes.length;
+        size--;
+    }
+
+    // Index 0 is the oldest (leftmost) pipe
+    public Pipe get(int index) {
+        return pipes[(head + index) % pipes.length];
+    }
+
+    public Pipe first() {
+        return get(0);
+    }
+
+    public Pipe last() {
+        return get(size - 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    // Only reached if spacing shrinks below what the initial capacity allows
+    private void grow() {
+        Pipe[] larger = new Pipe[pipes.length * 2];
+        for (int i = 0; i < size; i++) {
+            larger[i] = get(i);
+        }
+        for (int i = size; i < larger.length; i++) {
+            larger[i] = new Pipe(pipeWidth);
+        }
+        pipes = larger;
+        head = 0;
+    }
+}
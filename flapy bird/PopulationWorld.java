@@ -0,0 +1,270 @@
+import java.util.Arrays;
+
+// Many birds flying through one shared PipeCourse, for population training. Bird state lives in
+// parallel primitive arrays and each phase of a tick is a flat loop over them, which the JIT can
+// unroll and vectorize. All birds share an x position, so the pipes near them and each pipe's
+// horizontal overlap are decided once per tick and the per-bird collision test is two interval
+// checks (or two slab tests in swept mode).
+public class PopulationWorld {
+    private final int width;
+    private final int height;
+    private final double scale;
+    private final int size;
+    private final double birdX;
+    private final double halfBird;
+    private final int birdBox; // Width and height of the bird's collision box
+    private final double groundY;
+    private final PipeCourse course;
+
+    private final double[] y;
+    private final double[] prevY; // Before the last step, for swept collision
+    private final double[] velocity;
+    private final boolean[] alive;
+    private final boolean[] hit; // Scratch for the collision pass
+    private final boolean[] jumps; // Scratch for step(Agent[])
+    private final long[] deathTick;
+    private final int[] deathScore;
+    private int aliveCount;
+    private long tick;
+    private CollisionMode collisionMode = CollisionMode.SWEPT_BOX;
+
+    public PopulationWorld(int width, int height, int size, long seed) {
+        this.width = width;
+        this.height = height;
+        this.size = size;
+        this.scale = Math.min(width / 800.0, height / 600.0);
+        this.birdX = width / 4;
+        this.halfBird = Bird.BIRD_SIZE * scale / 2;
+        this.birdBox = (int) (Bird.BIRD_SIZE * scale);
+        this.groundY = height - (height * GameSimulation.GROUND_HEIGHT_RATIO);
+        this.course = new PipeCourse(width, height, (int) (height * GameSimulation.GROUND_HEIGHT_RATIO), scale);
+
+        y = new double[size];
+        prevY = new double[size];
+        velocity = new double[size];
+        alive = new boolean[size];
+        hit = new boolean[size];
+        jumps = new boolean[size];
+        deathTick = new long[size];
+        deathScore = new int[size];
+        reset(seed);
+    }
+
+    // Every bird starts where a GameSimulation bird would, on the course for seed
+    public void reset(long seed) {
+        course.reset(seed);
+        Arrays.fill(y, height / 2);
+        Arrays.fill(prevY, height / 2);
+        Arrays.fill(velocity, 0);
+        Arrays.fill(alive, true);
+        Arrays.fill(deathTick, 0);
+        Arrays.fill(deathScore, 0);
+        aliveCount = size;
+        tick = 0;
+    }
+
+    // Advance every bird one tick; jumps[i] flaps bird i before the physics step
+    public void step(boolean[] jumps) {
+        tick++;
+        double gravity = Bird.GRAVITY * scale;
+
+        // Physics: identical arithmetic to Bird.jump() followed by Bird.update(), whose scaled branch
+        // this is; at scale 1 both branches give the same doubles
+        for (int i = 0; i < size; i++) {
+            double v = (jumps[i] ? Bird.JUMP_SPEED : velocity[i]) + gravity;
+            velocity[i] = v;
+            prevY[i] = y[i];
+            y[i] += v * scale;
+        }
+
+        course.update(birdX);
+
+        // Ground and ceiling
+        for (int i = 0; i < size; i++) {
+            hit[i] = y[i] <= 0 || y[i] >= groundY;
+        }
+
+        // Pipes near the birds only, with the same edge rules as GameSimulation
+        int birdLeft = (int) (birdX - halfBird);
+        double left = birdLeft;
+        double right = birdLeft + birdBox;
+        if (collisionMode == CollisionMode.CIRCLE) {
+            left = birdX - birdBox / 2.0 - Pipe.CAP_OVERHANG * scale;
+            right = birdX + birdBox / 2.0 + Pipe.CAP_OVERHANG * scale;
+        }
+        PipeRing pipes = course.getPipes();
+        for (int p = course.firstCandidate(left); p < pipes.size(); p++) {
+            Pipe pipe = pipes.get(p);
+            if (pipe.getX() >= right) {
+                break;
+            }
+            switch (collisionMode) {
+                case DISCRETE_BOX:
+                    hitDiscrete(pipe, birdLeft);
+                    break;
+                case SWEPT_BOX:
+                    hitSwept(pipe, birdLeft);
+                    break;
+                default:
+                    hitCircle(pipe);
+                    break;
+            }
+        }
+
+        // Bookkeeping for birds that died this tick
+        int score = course.getScore();
+        for (int i = 0; i < size; i++) {
+            if (alive[i] && hit[i]) {
+                alive[i] = false;
+                deathTick[i] = tick;
+                deathScore[i] = score;
+                aliveCount--;
+            }
+        }
+    }
+
+    // Rectangle2D.intersects on each bird's integer box, as Collision.boxHitsPipe
+    private void hitDiscrete(Pipe pipe, int birdLeft) {
+        if (!(pipe.getX() + pipe.getWidth() > birdLeft)) {
+            return;
+        }
+        double topEnd = pipe.getGapY();
+        double bottomStart = topEnd + pipe.getGapHeight();
+        double bottomEnd = bottomStart + pipe.getBottomHeight();
+        boolean hasTop = topEnd > 0;
+        boolean hasBottom = pipe.getBottomHeight() > 0;
+        for (int i = 0; i < size; i++) {
+            int top = (int) (y[i] - halfBird);
+            int bottom = top + birdBox;
+            hit[i] |= (hasTop && topEnd > top && 0 < bottom)
+                    | (hasBottom && bottomEnd > top && bottomStart < bottom);
+        }
+    }
+
+    // Collision.sweptBoxHitsPipe with the x slab, which every bird shares, worked out once
+    private void hitSwept(Pipe pipe, int birdLeft) {
+        double dx = pipe.getPrevX() - pipe.getX();
+        double startX = birdLeft - dx;
+        double minX = pipe.getX() - birdBox;
+        double maxX = pipe.getX() + pipe.getWidth();
+        double enterX = Collision.entry(startX, dx, minX, maxX);
+        double exitX = Collision.exit(startX, dx, minX, maxX);
+        if (!(enterX < exitX && enterX < 1 && exitX > 0)) {
+            return;
+        }
+        double topEnd = pipe.getGapY();
+        double bottomStart = topEnd + pipe.getGapHeight();
+        double bottomHeight = pipe.getBottomHeight();
+        boolean hasTop = topEnd > 0;
+        boolean hasBottom = bottomHeight > 0;
+        for (int i = 0; i < size; i++) {
+            int prevTop = (int) (prevY[i] - halfBird);
+            int dy = (int) (y[i] - halfBird) - prevTop;
+            hit[i] |= (hasTop && Collision.sweptHits(enterX, exitX, prevTop, dy, -birdBox, topEnd))
+                    | (hasBottom && Collision.sweptHits(enterX, exitX, prevTop, dy,
+                            bottomStart - birdBox, bottomStart + bottomHeight));
+        }
+    }
+
+    // Collision.sweptCircleHitsPipe for every bird
+    private void hitCircle(Pipe pipe) {
+        double radius = birdBox / 2.0;
+        for (int i = 0; i < size; i++) {
+            hit[i] |= Collision.sweptCircleHitsPipe(birdX, prevY[i], y[i], radius, scale, pipe);
+        }
+    }
+
+    public CollisionMode getCollisionMode() {
+        return collisionMode;
+    }
+
+    // Should match the GameSimulation being compared against; takes effect from the next step
+    public void setCollisionMode(CollisionMode collisionMode) {
+        this.collisionMode = collisionMode;
+    }
+
+    // Advance one tick letting agents[i] decide for bird i
+    public void step(Agent[] agents) {
+        Pipe pipe = course.getNextPipe();
+        double pipeDistance = pipe.getX() - birdX;
+        double gapTop = pipe.getGapY();
+        double gapBottom = gapTop + pipe.getGapHeight();
+        for (int i = 0; i < size; i++) {
+            jumps[i] = alive[i] && agents[i].shouldJump(y[i], velocity[i], pipeDistance, gapTop, gapBottom);
+        }
+        step(jumps);
+    }
+
+    public boolean isExtinct() {
+        return aliveCount == 0;
+    }
+
+    public int getAliveCount() {
+        return aliveCount;
+    }
+
+    public boolean isAlive(int bird) {
+        return alive[bird];
+    }
+
+    public double getY(int bird) {
+        return y[bird];
+    }
+
+    public double getVelocity(int bird) {
+        return velocity[bird];
+    }
+
+    // Ticks survived; still counting for birds that are alive
+    public long getFitness(int bird) {
+        return alive[bird] ? tick : deathTick[bird];
+    }
+
+    // Pipes passed before dying, as GameSimulation would have scored it
+    public int getScore(int bird) {
+        return alive[bird] ? course.getScore() : deathScore[bird];
+    }
+
+    public PipeCourse getCourse() {
+        return course;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    // Throughput check: java PopulationWorld [birds] [ticks]
+    public static void main(String[] args) {
+        int birds = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        long ticks = args.length > 1 ? Long.parseLong(args[1]) : 200_000;
+        PopulationWorld world = new PopulationWorld(GameSimulation.WORLD_WIDTH, GameSimulation.WORLD_HEIGHT, birds, 1);
+        Agent[] agents = new Agent[birds];
+        for (int i = 0; i < birds; i++) {
+            agents[i] = new GapFollowerAgent(0.5 + 0.4 * i / birds);
+        }
+
+        long start = System.nanoTime();
+        long seed = 1;
+        int bestScore = 0;
+        for (long t = 0; t < ticks; t++) {
+            world.step(agents);
+            if (world.isExtinct() || world.getTick() >= 10_000) {
+                for (int i = 0; i < birds; i++) {
+                    bestScore = Math.max(bestScore, world.getScore(i));
+                }
+                world.reset(++seed);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d birds: %.0f ticks/s, %.1fM bird-ticks/s, best score %d over %d courses%n",
+                birds, ticks / seconds, ticks * (double) birds / seconds / 1e6, bestScore, seed);
+    }
+}
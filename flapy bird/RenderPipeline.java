@@ -0,0 +1,69 @@
+import java.awt.*;
+
+// Chooses the Java2D pipeline before AWT starts and reports which one is actually in use.
+// Java2D reads its sun.java2d.* switches once, when the first graphics environment is created,
+// so select() has to run at the very top of main.
+public final class RenderPipeline {
+    private RenderPipeline() {
+    }
+
+    // name is opengl, xrender, software or default (leave Java2D's own choice alone). Switches
+    // already given on the command line win, so -Dsun.java2d.* keeps working as documented.
+    public static void select(String name) {
+        switch (name.toLowerCase()) {
+            case "opengl":
+                setDefault("sun.java2d.opengl", "true");
+                break;
+            case "xrender":
+                setDefault("sun.java2d.opengl", "false");
+                setDefault("sun.java2d.xrender", "true");
+                break;
+            case "software":
+                setDefault("sun.java2d.opengl", "false");
+                setDefault("sun.java2d.xrender", "false");
+                setDefault("sun.java2d.d3d", "false");
+                setDefault("sun.java2d.metal", "false");
+                break;
+            case "default":
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown pipeline " + name
+                        + " (expected opengl, xrender, software or default)");
+        }
+    }
+
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    // Java2D picks one GraphicsConfiguration class per pipeline, and silently falls back when the
+    // requested one cannot start (no GLX, old X server), so the class is the honest answer
+    public static String describe(GraphicsConfiguration config) {
+        return name(config) + " (" + config.getClass().getSimpleName() + ")";
+    }
+
+    // True when the pipeline draws on the GPU (or, for XRender, in the X server), where scaled and
+    // filtered image draws cost about as much as plain copies
+    public static boolean isAccelerated(GraphicsConfiguration config) {
+        String name = name(config);
+        return !name.equals("software") && !name.equals("X11 software");
+    }
+
+    private static String name(GraphicsConfiguration config) {
+        String type = config.getClass().getSimpleName();
+        if (type.startsWith("GLX") || type.startsWith("WGL") || type.startsWith("CGL")) {
+            return "OpenGL";
+        } else if (type.startsWith("XR")) {
+            return "XRender";
+        } else if (type.startsWith("D3D")) {
+            return "Direct3D";
+        } else if (type.startsWith("MTL")) {
+            return "Metal";
+        } else if (type.startsWith("X11")) {
+            return "X11 software";
+        }
+        return "software";
+    }
+}
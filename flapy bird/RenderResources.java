@@ -0,0 +1,68 @@
+import java.awt.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Fonts, strokes and fade colours shared by everything drawn at one scale, created once instead
+// of on every draw call. Lookups follow the same per-scale pattern as SpriteCache.
+public class RenderResources {
+    private static final ConcurrentHashMap<Double, RenderResources> RESOURCES = new ConcurrentHashMap<>();
+    private static volatile RenderResources last;
+
+    private static final String FONT_NAME = "Arial";
+    static final BasicStroke OUTLINE = new BasicStroke(2); // Pipe and cap borders, unscaled
+
+    // Every alpha of white and black, for fades that change each frame
+    private static final Color[] WHITE = new Color[256];
+    private static final Color[] BLACK = new Color[256];
+
+    static {
+        for (int alpha = 0; alpha < 256; alpha++) {
+            WHITE[alpha] = new Color(255, 255, 255, alpha);
+            BLACK[alpha] = new Color(0, 0, 0, alpha);
+        }
+    }
+
+    private final double scale;
+    private final Font hudFont;
+    private final Font bannerFont;
+    private final BasicStroke scaledOutline;
+
+    private RenderResources(double scale) {
+        this.scale = scale;
+        this.hudFont = new Font(FONT_NAME, Font.BOLD, (int) (20 * scale));
+        this.bannerFont = new Font(FONT_NAME, Font.BOLD, (int) (40 * scale));
+        this.scaledOutline = new BasicStroke(2 * (float) scale);
+    }
+
+    public static RenderResources forScale(double scale) {
+        RenderResources resources = last;
+        if (resources == null || resources.scale != scale) {
+            resources = RESOURCES.computeIfAbsent(scale, RenderResources::new);
+            last = resources;
+        }
+        return resources;
+    }
+
+    // Score, level and popup text
+    public Font getHudFont() {
+        return hudFont;
+    }
+
+    // Level-up and game-over messages
+    public Font getBannerFont() {
+        return bannerFont;
+    }
+
+    // Bird outlines, which thicken with the scale
+    public BasicStroke getScaledOutline() {
+        return scaledOutline;
+    }
+
+    // alpha is clamped to [0, 255]
+    public static Color white(int alpha) {
+        return WHITE[Math.max(0, Math.min(255, alpha))];
+    }
+
+    public static Color black(int alpha) {
+        return BLACK[Math.max(0, Math.min(255, alpha))];
+    }
+}
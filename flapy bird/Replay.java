@@ -0,0 +1,423 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// A recorded game: the seed, the world size, collision and course modes the simulation ran with
+// and the ticks at which the player jumped. Re-simulating those inputs headlessly reproduces the game exactly.
+//
+// New games are always played in the standard world (GameSimulation.WORLD_WIDTH x WORLD_HEIGHT).
+// Games recorded before world units stored the window size here instead, and re-simulate in a
+// world of that size with the physics scaled the way it was then; the format did not change.
+//
+// File layout (varints are unsigned LEB128):
+//   "FBRP"  magic
+//   u8      format version
+//   i64     seed (big-endian)
+//   varint  width, height
+//   u8      collision mode ordinal (version 2 on; version 1 games used DISCRETE_BOX)
+//   u8      course mode ordinal (version 3 on; earlier games used RANDOM)
+//   varint  ticks played, final score
+//   varint  jump count, then each jump tick as the delta from the previous one
+public class Replay {
+    private static final int MAGIC = 0x46425250; // "FBRP"
+    private static final int VERSION = 3;
+    private static final int CHECK_FRAME_INTERVAL = 10; // Ticks between frames drawn by checkWindows
+    private static final int CHECK_SEEDS = 4; // Bot games per golden world, on seeds 1 to CHECK_SEEDS
+    private static final long CHECK_MAX_TICKS = 20_000;
+    private static final int CHECK_WITNESS_LEVELS = 10;
+
+    // Games checked when no replay files are given: the standard world in each collision and
+    // course mode, and legacy worlds, whose doubly scaled physics old replays depend on. The bot
+    // dies long before reachable courses differ from random ones, so those are played along
+    // CourseGenerator's witness path through CHECK_WITNESS_LEVELS levels instead. GOLDEN holds
+    // the digests, CHECK_SEEDS per world in order. Re-pin them only for a deliberate change to the
+    // physics or the courses, since it also changes how recorded games play back.
+    private static final String[] GOLDEN_WORLDS = {
+            "800x600 SWEPT_BOX REACHABLE witness",
+            "800x600 CIRCLE REACHABLE witness",
+            "800x600 SWEPT_BOX RANDOM bot",
+            "800x600 CIRCLE RANDOM bot",
+            "800x600 DISCRETE_BOX RANDOM bot",
+            "640x480 DISCRETE_BOX RANDOM bot",
+            "1920x1080 DISCRETE_BOX RANDOM bot",
+    };
+    private static final long[] GOLDEN = {
+            0xbdeaa9b97913c04aL, // 800x600 SWEPT_BOX REACHABLE seed 1
+            0xf8e3cb26b34f254cL, // 800x600 SWEPT_BOX REACHABLE seed 2
+            0x1a46ce2d54b8b801L, // 800x600 SWEPT_BOX REACHABLE seed 3
+            0x35c514ef4d845d33L, // 800x600 SWEPT_BOX REACHABLE seed 4
+            0x260311e06485260eL, // 800x600 CIRCLE REACHABLE seed 1
+            0xf8e3cb26b34f254cL, // 800x600 CIRCLE REACHABLE seed 2
+            0x1a46ce2d54b8b801L, // 800x600 CIRCLE REACHABLE seed 3
+            0xe25ad409a20b8c21L, // 800x600 CIRCLE REACHABLE seed 4
+            0xfe46985eeeb60273L, // 800x600 SWEPT_BOX RANDOM seed 1
+            0x54f41d417ab69e15L, // 800x600 SWEPT_BOX RANDOM seed 2
+            0x956862e4bc78c024L, // 800x600 SWEPT_BOX RANDOM seed 3
+            0x7ab59fb95872cca7L, // 800x600 SWEPT_BOX RANDOM seed 4
+            0xfe46985eeeb60273L, // 800x600 CIRCLE RANDOM seed 1
+            0x8bbe8f3a67dfdfbcL, // 800x600 CIRCLE RANDOM seed 2
+            0x956862e4bc78c024L, // 800x600 CIRCLE RANDOM seed 3
+            0x7ab59fb95872cca7L, // 800x600 CIRCLE RANDOM seed 4
+            0xfe46985eeeb60273L, // 800x600 DISCRETE_BOX RANDOM seed 1
+            0x54f41d417ab69e15L, // 800x600 DISCRETE_BOX RANDOM seed 2
+            0x11b83a7b956b0d15L, // 800x600 DISCRETE_BOX RANDOM seed 3
+            0x7ab59fb95872cca7L, // 800x600 DISCRETE_BOX RANDOM seed 4
+            0x55c043b73853b75cL, // 640x480 DISCRETE_BOX RANDOM seed 1
+            0x079bb476598fae94L, // 640x480 DISCRETE_BOX RANDOM seed 2
+            0x0b320e5f0e70e419L, // 640x480 DISCRETE_BOX RANDOM seed 3
+            0x150880fff023a0a1L, // 640x480 DISCRETE_BOX RANDOM seed 4
+            0x30f7e63b131b6748L, // 1920x1080 DISCRETE_BOX RANDOM seed 1
+            0x663e948bbfa33f23L, // 1920x1080 DISCRETE_BOX RANDOM seed 2
+            0x1f880210725fefdaL, // 1920x1080 DISCRETE_BOX RANDOM seed 3
+            0xc136da8bbf77134fL, // 1920x1080 DISCRETE_BOX RANDOM seed 4
+    };
+
+    private final long seed;
+    private final int width;
+    private final int height;
+    private final CollisionMode collisionMode;
+    private final CourseMode courseMode;
+    private long[] jumps = new long[64];
+    private int jumpCount;
+    private long ticks;
+    private int score;
+
+    public Replay(long seed, int width, int height, CollisionMode collisionMode, CourseMode courseMode) {
+        this.seed = seed;
+        this.width = width;
+        this.height = height;
+        this.collisionMode = collisionMode;
+        this.courseMode = courseMode;
+    }
+
+    // tick is GameSimulation.getTick() at the moment of the jump, i.e. before that tick runs
+    public void recordJump(long tick) {
+        if (jumpCount > 0 && jumps[jumpCount - 1] == tick) {
+            return; // A second jump in the same tick changes nothing
+        }
+        if (jumpCount == jumps.length) {
+            jumps = Arrays.copyOf(jumps, jumps.length * 2);
+        }
+        jumps[jumpCount++] = tick;
+    }
+
+    public void finish(long ticks, int score) {
+        this.ticks = ticks;
+        this.score = score;
+    }
+
+    // Play the recorded inputs on a fresh headless simulation until the game ends
+    public GameSimulation simulate() {
+        GameSimulation simulation = start(false);
+        int next = 0;
+        while (!simulation.isGameOver() && simulation.getTick() < ticks) {
+            if (next < jumpCount && jumps[next] == simulation.getTick()) {
+                simulation.jump();
+                next++;
+            }
+            simulation.tick();
+        }
+        return simulation;
+    }
+
+    // Play the recorded inputs and return a digest of the world state after every tick. With a
+    // window, visual effects are on and a frame is drawn at that size every CHECK_FRAME_INTERVAL
+    // ticks; with null, the game runs headless without effects, as simulate() does.
+    public long trajectoryDigest(Dimension windowSize) {
+        GameSimulation simulation = start(windowSize != null);
+        GameRenderer renderer = null;
+        Graphics2D g2d = null;
+        if (windowSize != null) {
+            renderer = new GameRenderer(simulation, windowSize.width, windowSize.height, FrameProfiler.DISABLED);
+            g2d = new BufferedImage(windowSize.width, windowSize.height, BufferedImage.TYPE_INT_RGB).createGraphics();
+        }
+        long digest = 17;
+        int next = 0;
+        while (!simulation.isGameOver() && simulation.getTick() < ticks) {
+            if (next < jumpCount && jumps[next] == simulation.getTick()) {
+                simulation.jump();
+                next++;
+            }
+            simulation.tick();
+            if (renderer != null && simulation.getTick() % CHECK_FRAME_INTERVAL == 0) {
+                renderer.render(g2d, simulation, 0.5);
+            }
+            Bird bird = simulation.getBird();
+            digest = mix(digest, bird.getY());
+            digest = mix(digest, bird.getVelocity());
+            digest = mix(digest, simulation.getScore());
+            PipeRing pipes = simulation.getPipes();
+            for (int i = 0; i < pipes.size(); i++) {
+                digest = mix(digest, pipes.get(i).getX());
+                digest = mix(digest, pipes.get(i).getGapY());
+            }
+        }
+        if (g2d != null) {
+            g2d.dispose();
+        }
+        return mix(digest, simulation.getTick());
+    }
+
+    // A fresh simulation set up the way the recorded game was
+    private GameSimulation start(boolean effects) {
+        GameSimulation simulation = new GameSimulation(width, height, effects, seed);
+        simulation.setCollisionMode(collisionMode);
+        if (simulation.getCourseMode() != courseMode) {
+            simulation.setCourseMode(courseMode);
+            simulation.reset(seed);
+        }
+        return simulation;
+    }
+
+    private static long mix(long digest, double value) {
+        return digest * 31 + Double.doubleToLongBits(value);
+    }
+
+    // True when the recorded inputs reproduce the claimed length and score
+    public boolean verify() {
+        GameSimulation result = simulate();
+        return result.isGameOver() && result.getTick() == ticks && result.getScore() == score;
+    }
+
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeLong(seed);
+        writeVarint(data, width);
+        writeVarint(data, height);
+        data.writeByte(collisionMode.ordinal());
+        data.writeByte(courseMode.ordinal());
+        writeVarint(data, ticks);
+        writeVarint(data, score);
+        writeVarint(data, jumpCount);
+        long previous = 0;
+        for (int i = 0; i < jumpCount; i++) {
+            writeVarint(data, jumps[i] - previous);
+            previous = jumps[i];
+        }
+        data.flush();
+    }
+
+    public static Replay read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a replay file");
+        }
+        int version = data.readUnsignedByte();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported replay version " + version);
+        }
+        long seed = data.readLong();
+        int width = (int) readVarint(data);
+        int height = (int) readVarint(data);
+        CollisionMode mode = CollisionMode.DISCRETE_BOX;
+        if (version >= 2) {
+            int ordinal = data.readUnsignedByte();
+            if (ordinal >= CollisionMode.values().length) {
+                throw new IOException("Unknown collision mode " + ordinal);
+            }
+            mode = CollisionMode.values()[ordinal];
+        }
+        CourseMode courseMode = CourseMode.RANDOM;
+        if (version >= 3) {
+            int ordinal = data.readUnsignedByte();
+            if (ordinal >= CourseMode.values().length) {
+                throw new IOException("Unknown course mode " + ordinal);
+            }
+            courseMode = CourseMode.values()[ordinal];
+        }
+        Replay replay = new Replay(seed, width, height, mode, courseMode);
+        replay.ticks = readVarint(data);
+        replay.score = (int) readVarint(data);
+        int count = (int) readVarint(data);
+        long tick = 0;
+        for (int i = 0; i < count; i++) {
+            tick += readVarint(data);
+            replay.recordJump(tick);
+        }
+        return replay;
+    }
+
+    public void save(File file) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            write(out);
+        }
+    }
+
+    public static Replay load(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return read(in);
+        }
+    }
+
+    private static void writeVarint(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarint(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public CollisionMode getCollisionMode() {
+        return collisionMode;
+    }
+
+    public CourseMode getCourseMode() {
+        return courseMode;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getJumpCount() {
+        return jumpCount;
+    }
+
+    // The game agent plays on seed in a world of the given size and modes, recorded as a replay
+    static Replay record(long seed, Agent agent, long maxTicks, Dimension world, CollisionMode mode,
+                         CourseMode courseMode) {
+        Replay replay = new Replay(seed, world.width, world.height, mode, courseMode);
+        GameSimulation simulation = replay.start(false);
+        while (!simulation.isGameOver() && simulation.getTick() < maxTicks) {
+            if (Agent.decide(agent, simulation)) {
+                replay.recordJump(simulation.getTick());
+                simulation.jump();
+            }
+            simulation.tick();
+        }
+        replay.finish(simulation.getTick(), simulation.getScore());
+        return replay;
+    }
+
+    // The games of GOLDEN_WORLDS, in the order of GOLDEN
+    static List<Replay> goldenGames() {
+        List<Replay> games = new ArrayList<>();
+        for (String world : GOLDEN_WORLDS) {
+            String[] parts = world.split(" ");
+            Dimension size = LogicalFramebuffer.parseSize(parts[0]);
+            CollisionMode mode = CollisionMode.valueOf(parts[1]);
+            CourseMode courseMode = CourseMode.valueOf(parts[2]);
+            for (int seed = 1; seed <= CHECK_SEEDS; seed++) {
+                games.add(parts[3].equals("witness")
+                        ? recordWitness(seed, CourseGenerator.witness(seed, CHECK_WITNESS_LEVELS), size, mode, courseMode)
+                        : record(seed, new GapFollowerAgent(0.7), CHECK_MAX_TICKS, size, mode, courseMode));
+            }
+        }
+        return games;
+    }
+
+    // Jumps (one flag per tick) then none until the bird falls, recorded as a replay
+    private static Replay recordWitness(long seed, boolean[] jumps, Dimension world, CollisionMode mode,
+                                        CourseMode courseMode) {
+        Replay replay = new Replay(seed, world.width, world.height, mode, courseMode);
+        GameSimulation simulation = replay.start(false);
+        while (!simulation.isGameOver() && simulation.getTick() < CHECK_MAX_TICKS) {
+            int tick = (int) simulation.getTick();
+            if (tick < jumps.length && jumps[tick]) {
+                replay.recordJump(tick);
+                simulation.jump();
+            }
+            simulation.tick();
+        }
+        replay.finish(simulation.getTick(), simulation.getScore());
+        return replay;
+    }
+
+    // Regression check for the physics and for anything drawing might change: every replay is
+    // played headless without effects, then with effects on while drawing at each window size, and
+    // all the world-state digests must match. expected, when not null, pins each replay's headless
+    // digest as well. Returns false on any mismatch.
+    static boolean checkWindows(List<Replay> replays, List<Dimension> sizes, long[] expected) {
+        boolean same = true;
+        for (int r = 0; r < replays.size(); r++) {
+            Replay replay = replays.get(r);
+            long headless = replay.trajectoryDigest(null);
+            StringBuilder mismatches = new StringBuilder();
+            if (expected != null && headless != expected[r]) {
+                mismatches.append(String.format(" headless (%016x, pinned %016x)", headless, expected[r]));
+            }
+            for (Dimension size : sizes) {
+                if (replay.trajectoryDigest(size) != headless) {
+                    mismatches.append(' ').append(size.width).append('x').append(size.height);
+                }
+            }
+            same &= mismatches.length() == 0;
+            System.out.printf("%016x in %dx%d (%d ticks): %s%n", replay.seed, replay.width, replay.height, replay.ticks,
+                    mismatches.length() == 0 ? "same trajectory" : "DIFFERENT at" + mismatches);
+        }
+        return same;
+    }
+
+    // Verify replay files headlessly: java Replay game1.fbr game2.fbr ...
+    // Check the physics and that drawing never changes a game:
+    //   java Replay -windows 640x480,1920x1440 [game.fbr ...]
+    // Print the golden bot games' digests, to re-pin GOLDEN after a deliberate change: java Replay -golden
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("-golden")) {
+            for (Replay replay : goldenGames()) {
+                System.out.printf("            0x%016xL, // %dx%d %s %s seed %d%n", replay.trajectoryDigest(null),
+                        replay.width, replay.height, replay.collisionMode, replay.courseMode, replay.seed);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("-windows")) {
+            if (args.length < 2) {
+                System.err.println("Usage: java Replay -windows WIDTHxHEIGHT[,WIDTHxHEIGHT...] [game.fbr ...]");
+                System.exit(2);
+            }
+            List<Dimension> sizes = new ArrayList<>();
+            for (String size : args[1].split(",")) {
+                sizes.add(LogicalFramebuffer.parseSize(size));
+            }
+            List<Replay> replays = new ArrayList<>();
+            for (int i = 2; i < args.length; i++) {
+                replays.add(load(new File(args[i])));
+            }
+            long[] expected = null;
+            if (replays.isEmpty()) {
+                replays = goldenGames();
+                expected = GOLDEN;
+            }
+            if (!checkWindows(replays, sizes, expected)) {
+                System.exit(1);
+            }
+            return;
+        }
+        for (String path : args) {
+            Replay replay = load(new File(path));
+            long start = System.nanoTime();
+            GameSimulation result = replay.simulate();
+            double millis = (System.nanoTime() - start) / 1e6;
+            boolean valid = result.isGameOver() && result.getTick() == replay.ticks
+                    && result.getScore() == replay.score;
+            System.out.printf("%s: %s (claimed score %d in %d ticks, simulated score %d in %d ticks, %.2f ms)%n",
+                    path, valid ? "VALID" : "INVALID", replay.score, replay.ticks,
+                    result.getScore(), result.getTick(), millis);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+import java.awt.*;
+import java.nio.ByteBuffer;
+
+public class ScorePopup {
+    private double x, y;
+    private double prevY; // Position at the start of the last tick, for render interpolation
+    private double vy;
+    private int life;
+    private static final int MAX_LIFE = 30;
+    private static final String TEXT = "+1";
+    private double scale;
+    private int textWidth = -1; // Measured on first draw, when a Graphics is at hand
+    private double textZoom; // The zoom textWidth was measured at
+
+    public ScorePopup(double x, double y, double scale) {
+        this.x = x;
+        this.y = y;
+        this.prevY = y;
+        this.vy = -2;
+        this.life = MAX_LIFE;
+        this.scale = scale;
+    }
+
+    public void update() {
+        prevY = y;
+        y += vy;
+        vy += 0.1;
+        life--;
+    }
+
+    // zoom is window pixels per world unit
+    public void draw(Graphics2D g, double alpha, double zoom) {
+        float fade = (float) life / MAX_LIFE;
+        RenderResources resources = RenderResources.forScale(scale * zoom);
+        g.setColor(RenderResources.white((int) (fade * 255)));
+        g.setFont(resources.getHudFont());
+        if (textWidth < 0 || textZoom != zoom) {
+            textWidth = g.getFontMetrics().stringWidth(TEXT);
+            textZoom = zoom;
+        }
+        g.drawString(TEXT, (int) (x * zoom) - textWidth / 2, (int) ((prevY + (y - prevY) * alpha) * zoom));
+    }
+
+    static final int SNAPSHOT_BYTES = 4 * Double.BYTES + Integer.BYTES;
+
+    void save(ByteBuffer out) {
+        out.putDouble(x).putDouble(y).putDouble(prevY).putDouble(vy).putInt(life);
+    }
+
+    void restore(ByteBuffer in) {
+        x = in.getDouble();
+        y = in.getDouble();
+        prevY = in.getDouble();
+        vy = in.getDouble();
+        life = in.getInt();
+    }
+
+    void setStreamedState(double x, double y, double prevY, int life) {
+        this.x = x;
+        this.y = y;
+        this.prevY = prevY;
+        this.life = life;
+    }
+
+    double getX() {
+        return x;
+    }
+
+    double getY() {
+        return y;
+    }
+
+    double getPrevY() {
+        return prevY;
+    }
+
+    int getLife() {
+        return life;
+    }
+
+    public boolean isDead() {
+        return life <= 0;
+    }
+}
@@ -0,0 +1,131 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferStrategy;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.locks.LockSupport;
+
+// Watches a game streamed by FlappyBird -Dflappy.stream=<port>. A reader thread decodes frames
+// into a StateStreamDecoder's simulation as they arrive, and the window draws that simulation
+// with the game's own GameRenderer, interpolating from the previous tick by the time since the
+// last frame came in.
+public class Spectator extends Canvas {
+    private static final double SCALE_FACTOR = 0.8; // Of the screen, like the game window
+    private static final long TICK_NANOS = 1_000_000_000L / GameServer.TICK_RATE;
+    private static final long FRAME_NANOS = 1_000_000_000L / 60;
+
+    private final SocketChannel channel;
+    private final StateStreamDecoder decoder;
+    private final GameSimulation view;
+    private GameRenderer renderer;
+    private BufferStrategy strategy;
+    private volatile long lastFrameNanos;
+    private volatile boolean connected = true;
+
+    public Spectator(SocketChannel channel) {
+        this.channel = channel;
+        // Games are always streamed in the standard world
+        decoder = new StateStreamDecoder(GameSimulation.WORLD_WIDTH, GameSimulation.WORLD_HEIGHT);
+        view = decoder.getSimulation();
+
+        Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
+        double s = Math.min(screenSize.width * SCALE_FACTOR / GameSimulation.WORLD_WIDTH,
+                screenSize.height * SCALE_FACTOR / GameSimulation.WORLD_HEIGHT);
+        setPreferredSize(new Dimension((int) Math.round(GameSimulation.WORLD_WIDTH * s),
+                (int) Math.round(GameSimulation.WORLD_HEIGHT * s)));
+        setIgnoreRepaint(true);
+    }
+
+    // Reads length-prefixed frames until the stream ends
+    private void receive() {
+        ByteBuffer length = ByteBuffer.allocate(2);
+        ByteBuffer frame = ByteBuffer.allocate(StateStream.MAX_FRAME_BYTES);
+        try {
+            while (true) {
+                length.clear();
+                readFully(length);
+                frame.clear();
+                frame.limit(length.getShort(0) & 0xFFFF);
+                readFully(frame);
+                frame.flip();
+                synchronized (view) {
+                    decoder.decode(frame);
+                    lastFrameNanos = System.nanoTime();
+                }
+            }
+        } catch (IOException ex) {
+            System.out.println("Stream ended: " + ex.getMessage());
+        } finally {
+            connected = false;
+        }
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("connection closed");
+            }
+        }
+    }
+
+    // Needs the canvas on screen for its BufferStrategy; draws until the stream ends
+    public void watch() {
+        createBufferStrategy(2);
+        strategy = getBufferStrategy();
+        renderer = new GameRenderer(view, getWidth(), getHeight(), FrameProfiler.DISABLED);
+        Thread reader = new Thread(this::receive, "spectator-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        long next = System.nanoTime();
+        while (connected) {
+            render();
+            next += FRAME_NANOS;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else {
+                next = System.nanoTime();
+            }
+        }
+    }
+
+    private void render() {
+        do {
+            do {
+                Graphics2D g2d = (Graphics2D) strategy.getDrawGraphics();
+                try {
+                    synchronized (view) {
+                        double alpha = view.isGameOver() ? 1.0
+                                : Math.min(1.0, (double) (System.nanoTime() - lastFrameNanos) / TICK_NANOS);
+                        renderer.render(g2d, view, alpha);
+                    }
+                } finally {
+                    g2d.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+    }
+
+    // java Spectator [host] [port]
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : GameServer.DEFAULT_PORT + 1;
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+
+        JFrame frame = new JFrame("Flappy Bird - watching " + host + ":" + port);
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setResizable(false);
+        Spectator spectator = new Spectator(channel);
+        frame.add(spectator);
+        frame.pack();
+        frame.setLocationRelativeTo(null);
+        frame.setVisible(true);
+        spectator.watch();
+    }
+}
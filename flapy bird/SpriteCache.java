@@ -0,0 +1,145 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Rasterizes the bird, pipe and cloud artwork once per scale and blits it afterwards,
+// so a frame costs a handful of image copies instead of gradients, strokes and Area CSG
+public class SpriteCache {
+    private static final ConcurrentHashMap<Double, SpriteCache> CACHES = new ConcurrentHashMap<>();
+    private static volatile SpriteCache last; // Every entity in a game shares one scale
+
+    static final int WING_FRAMES = 8;
+    static final int ROTATION_STEP = 4; // Degrees between pre-rendered bird rotations
+    private static final int ROTATION_FRAMES = 360 / ROTATION_STEP;
+    private static final int PADDING = 2; // Room for the border stroke and antialiasing
+    private static final int PIPE_STRIP_LENGTH = 300; // Typical pipe length at scale 1
+
+    private final double scale;
+
+    // Bird frames are rendered lazily: only the rotations a game actually reaches get built
+    private final BufferedImage[][] birdFrames = new BufferedImage[WING_FRAMES][ROTATION_FRAMES];
+    private final int birdHalfSize;
+
+    private BufferedImage pipeBody;
+    private BufferedImage pipeCap;
+    private int capOverhang; // In pixels at this scale
+    private int capHeight;
+
+    private BufferedImage cloud;
+    private int cloudTop;
+
+    private SpriteCache(double scale) {
+        this.scale = scale;
+        // The beak reaches 3/4 of the body size from the centre, whatever the rotation
+        this.birdHalfSize = (int) Math.ceil(Bird.BIRD_SIZE * scale * 0.75) + PADDING;
+    }
+
+    public static SpriteCache forScale(double scale) {
+        SpriteCache cache = last;
+        if (cache == null || cache.scale != scale) {
+            cache = CACHES.computeIfAbsent(scale, SpriteCache::new);
+            last = cache;
+        }
+        return cache;
+    }
+
+    // wingPhase is the wing position from -1 (fully down) to 1 (fully up)
+    public void drawBird(Graphics2D g2d, double x, double y, double rotation, double wingPhase) {
+        int wing = (int) Math.round((wingPhase + 1) / 2 * (WING_FRAMES - 1));
+        wing = Math.max(0, Math.min(WING_FRAMES - 1, wing));
+        int turn = Math.floorMod((int) Math.round(rotation / ROTATION_STEP), ROTATION_FRAMES);
+
+        BufferedImage frame = birdFrames[wing][turn];
+        if (frame == null) {
+            frame = renderBird(wing, turn);
+            birdFrames[wing][turn] = frame;
+        }
+        g2d.drawImage(frame, (int) Math.round(x) - birdHalfSize, (int) Math.round(y) - birdHalfSize, null);
+    }
+
+    private BufferedImage renderBird(int wing, int turn) {
+        double wingAngle = ((double) wing / (WING_FRAMES - 1) * 2 - 1) * Bird.WING_RANGE * scale;
+        BufferedImage image = createImage(birdHalfSize * 2, birdHalfSize * 2);
+        Graphics2D g = prepare(image);
+        g.translate(birdHalfSize, birdHalfSize);
+        g.rotate(Math.toRadians(turn * ROTATION_STEP));
+        Bird.paintSprite(g, scale, wingAngle);
+        g.dispose();
+        return image;
+    }
+
+    public void drawPipe(Graphics2D g2d, double x, double topHeight, double bottomY, double bottomHeight) {
+        if (pipeBody == null) {
+            renderPipe();
+        }
+        int left = (int) Math.round(x);
+        int top = (int) Math.round(topHeight);
+        int bottom = (int) Math.round(bottomY);
+        int bottomEnd = bottom + (int) Math.ceil(bottomHeight);
+        int bodyWidth = pipeBody.getWidth();
+        int bodyLength = pipeBody.getHeight();
+        int capLeft = left - capOverhang - PADDING;
+
+        // The body gradient runs mostly along the pipe, so one strip stretched to length
+        // stands in for the per-pipe diagonal gradient
+        g2d.drawImage(pipeBody, left - PADDING, 0, left - PADDING + bodyWidth, top,
+                0, 0, bodyWidth, bodyLength, null);
+        g2d.drawImage(pipeCap, capLeft, top - capHeight - PADDING, null);
+        g2d.drawImage(pipeBody, left - PADDING, bottom, left - PADDING + bodyWidth, bottomEnd,
+                0, 0, bodyWidth, bodyLength, null);
+        g2d.drawImage(pipeCap, capLeft, bottom - PADDING, null);
+    }
+
+    private void renderPipe() {
+        int width = (int) Math.round(Pipe.PIPE_WIDTH * scale);
+        int length = (int) Math.round(PIPE_STRIP_LENGTH * scale);
+        pipeBody = createImage(width + PADDING * 2, length);
+        Graphics2D g = prepare(pipeBody);
+        g.translate(PADDING, 0);
+        Pipe.paintBody(g, Pipe.PIPE_WIDTH * scale, length);
+        g.dispose();
+
+        capOverhang = (int) Math.round(Pipe.CAP_OVERHANG * scale);
+        capHeight = (int) Math.round(Pipe.CAP_HEIGHT * scale);
+        pipeCap = createImage(width + capOverhang * 2 + PADDING * 2, capHeight + PADDING * 2);
+        g = prepare(pipeCap);
+        g.translate(PADDING, PADDING);
+        Pipe.paintCap(g, Pipe.PIPE_WIDTH * scale, scale);
+        g.dispose();
+    }
+
+    public void drawCloud(Graphics2D g2d, double x, double y) {
+        if (cloud == null) {
+            int size = (int) (Cloud.BASE_SIZE * scale);
+            // Puffs reach size / 4 above and below the main body and size / 2 to its right
+            cloudTop = size / 4 + PADDING;
+            cloud = createImage(size + size / 2 + PADDING * 2, size + size / 2 + PADDING * 2);
+            Graphics2D g = prepare(cloud);
+            g.translate(PADDING, cloudTop);
+            Cloud.paintSprite(g, scale);
+            g.dispose();
+        }
+        g2d.drawImage(cloud, (int) Math.round(x) - PADDING, (int) Math.round(y) - cloudTop, null);
+    }
+
+    private static BufferedImage createImage(int width, int height) {
+        return createImage(width, height, Transparency.TRANSLUCENT);
+    }
+
+    // Compatible images are kept in video memory by Java2D where the pipeline supports it
+    static BufferedImage createImage(int width, int height, int transparency) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(width, height, transparency == Transparency.OPAQUE
+                    ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDefaultConfiguration().createCompatibleImage(width, height, transparency);
+    }
+
+    private static Graphics2D prepare(BufferedImage image) {
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        return g;
+    }
+}
@@ -0,0 +1,117 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+// Streams one game to any number of Spectators over TCP, each frame as a 2-byte length followed
+// by a StateStream frame. It runs on the thread that ticks the game, so the sockets are
+// non-blocking. What a viewer cannot take yet waits in its backlog, and a viewer more than
+// BACKLOG_BYTES behind is dropped rather than holding the game up.
+public class StateBroadcaster {
+    private static final int BACKLOG_BYTES = 64 * 1024; // About 10 s of deltas
+
+    private final ServerSocketChannel server;
+    private final StateStreamEncoder encoder = new StateStreamEncoder(StateStream.DEFAULT_KEYFRAME_TICKS);
+    private final ByteBuffer frame = ByteBuffer.allocate(2 + StateStream.MAX_FRAME_BYTES);
+    private final List<Viewer> viewers = new ArrayList<>();
+
+    private static final class Viewer {
+        final SocketChannel channel;
+        final ByteBuffer backlog = ByteBuffer.allocate(BACKLOG_BYTES);
+
+        Viewer(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    // Listens on all interfaces; port 0 picks a free one
+    public StateBroadcaster(int port) throws IOException {
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    // Call after every tick. Encodes under the simulation's lock and sends outside it; nothing is
+    // encoded while nobody is watching.
+    public void publish(GameSimulation simulation) {
+        acceptViewers();
+        if (viewers.isEmpty()) {
+            return;
+        }
+        frame.clear();
+        frame.position(2);
+        boolean encoded;
+        synchronized (simulation) {
+            encoded = encoder.encode(simulation, frame);
+        }
+        if (!encoded) {
+            return;
+        }
+        frame.putShort(0, (short) (frame.position() - 2));
+        frame.flip();
+        for (int i = viewers.size() - 1; i >= 0; i--) {
+            if (!send(viewers.get(i))) {
+                close(viewers.remove(i));
+            }
+        }
+    }
+
+    private void acceptViewers() {
+        try {
+            SocketChannel channel;
+            while ((channel = server.accept()) != null) {
+                channel.configureBlocking(false);
+                viewers.add(new Viewer(channel));
+                encoder.requestKeyframe(); // Everyone gets it; it costs about a dozen deltas
+            }
+        } catch (IOException ex) {
+            System.err.println("Could not accept spectator: " + ex.getMessage());
+        }
+    }
+
+    // False when the viewer has gone or fallen too far behind
+    private boolean send(Viewer viewer) {
+        ByteBuffer backlog = viewer.backlog;
+        try {
+            if (backlog.position() > 0) {
+                backlog.flip();
+                viewer.channel.write(backlog);
+                backlog.compact();
+            }
+            frame.rewind();
+            if (backlog.position() == 0) {
+                viewer.channel.write(frame);
+            }
+            if (frame.remaining() > backlog.remaining()) {
+                return false;
+            }
+            backlog.put(frame);
+            return true;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private static void close(Viewer viewer) {
+        try {
+            viewer.channel.close();
+        } catch (IOException ignored) {
+            // Already gone
+        }
+    }
+
+    public void close() throws IOException {
+        for (Viewer viewer : viewers) {
+            close(viewer);
+        }
+        viewers.clear();
+        server.close();
+    }
+}
@@ -0,0 +1,234 @@
+import java.nio.ByteBuffer;
+
+// Compact per-tick stream of what a spectator needs to draw a game: bird, pipes, popups, ground
+// and the HUD numbers. Clouds and particles are left out; the viewer animates its own clouds.
+// StateStreamEncoder writes one frame per tick and StateStreamDecoder turns frames back into a
+// GameSimulation for GameRenderer.
+//
+// Positions are quantized to 1/8 world unit and rotations to 1/4 degree. Every so often a frame is
+// a keyframe holding the whole quantized state. The frames in between are deltas: each moving
+// value is predicted from its last velocity and acceleration, and only the miss is sent, which
+// is nearly always zero. Frames are bit-packed, most significant bit first, padded to a byte:
+//
+//   keyframe:1
+//   keyframe  seed:64 tick:32 gameOver:1 score:16 level:8 levelUpTimer:8
+//             ground:2x32 birdY:2x20 birdRotation:2x20 wing:8              (previous, current)
+//             pipes:5 { x:2x20 gapY:20 gap:20 }  popups:5 { x:20 y:2x20 life:6 }
+//   delta     changed:1 [gameOver:1 score:16 level:8 levelUpTimer:8]       (tick is one on)
+//             ground:miss birdY:miss birdRotation:miss wing:8
+//             removed:2 added:2 { x:miss } for kept pipes, then added pipes as in a keyframe
+//             removed:2 added:2 { y:miss } for kept popups, then added popups as in a keyframe
+//
+// A miss is zigzag-coded: 0 is one bit, anything else 1, its bit length - 1 in 4 bits, then
+// its bits below the leading one. Pipes and popups only leave at the front and join at the back.
+//
+// This class is the quantized state both ends keep in step: the encoder moves it forward as it
+// writes and the decoder as it reads, so predictions on both sides are identical.
+public class StateStream {
+    static final int POSITION_QUANTUM = 8; // Steps per world unit
+    static final int ROTATION_QUANTUM = 4; // Steps per degree
+    static final int WING_STEPS = 127; // Per half swing
+    static final int POSITION_BITS = 20;
+    static final int MAX_ITEMS = 31; // Pipes or popups in one frame; about 7 and 2 are ever alive
+    static final int MAX_CHANGES = 3; // Items leaving or joining in one delta
+    static final int MAX_MISS = 1 << 16; // Larger misses are sent as a keyframe instead
+    public static final int MAX_FRAME_BYTES = 1024; // A keyframe of MAX_ITEMS of each
+    public static final int DEFAULT_KEYFRAME_TICKS = 50; // One a second
+
+    boolean started; // A keyframe has been seen
+    long seed;
+    long tick;
+    boolean gameOver;
+    int score;
+    int level;
+    int levelUpTimer;
+    final Track ground = new Track();
+    final Track birdY = new Track();
+    final Track birdRotation = new Track();
+    int wing;
+
+    int pipeCount;
+    final Track[] pipeX = tracks();
+    final int[] pipeGapY = new int[MAX_ITEMS];
+    final int[] pipeGap = new int[MAX_ITEMS];
+
+    int popupCount;
+    final int[] popupX = new int[MAX_ITEMS];
+    final Track[] popupY = tracks();
+    final int[] popupLife = new int[MAX_ITEMS];
+
+    // One quantized value with its last velocity and acceleration, in steps per tick
+    static final class Track {
+        int value;
+        int velocity;
+        int acceleration;
+
+        int predict() {
+            return value + velocity + acceleration;
+        }
+
+        void advance(int actual) {
+            int newVelocity = actual - value;
+            acceleration = newVelocity - velocity;
+            velocity = newVelocity;
+            value = actual;
+        }
+
+        void set(int previous, int current) {
+            value = current;
+            velocity = current - previous;
+            acceleration = 0;
+        }
+
+        int previous() {
+            return value - velocity;
+        }
+    }
+
+    private static Track[] tracks() {
+        Track[] tracks = new Track[MAX_ITEMS];
+        for (int i = 0; i < MAX_ITEMS; i++) {
+            tracks[i] = new Track();
+        }
+        return tracks;
+    }
+
+    // The level-up banner counts down by itself; anything else in the header is news
+    boolean headerChanged(boolean gameOver, int score, int level, int levelUpTimer) {
+        return gameOver != this.gameOver || score != this.score || level != this.level
+                || levelUpTimer != Math.max(0, this.levelUpTimer - 1);
+    }
+
+    void setHeader(boolean gameOver, int score, int level, int levelUpTimer) {
+        this.gameOver = gameOver;
+        this.score = score;
+        this.level = level;
+        this.levelUpTimer = levelUpTimer;
+    }
+
+    // Drops the first n pipes; the Track objects rotate round rather than being replaced
+    void removePipes(int n) {
+        rotate(pipeX, pipeGapY, pipeGap, pipeCount, n);
+        pipeCount -= n;
+    }
+
+    void removePopups(int n) {
+        rotate(popupY, popupX, popupLife, popupCount, n);
+        popupCount -= n;
+    }
+
+    private static void rotate(Track[] tracks, int[] a, int[] b, int count, int n) {
+        for (int k = 0; k < n; k++) {
+            Track first = tracks[0];
+            for (int i = 1; i < count - k; i++) {
+                tracks[i - 1] = tracks[i];
+            }
+            tracks[count - k - 1] = first;
+        }
+        System.arraycopy(a, n, a, 0, count - n);
+        System.arraycopy(b, n, b, 0, count - n);
+    }
+
+    static int position(double value) {
+        return (int) Math.round(value * POSITION_QUANTUM);
+    }
+
+    static int rotation(double degrees) {
+        return (int) Math.round(degrees * ROTATION_QUANTUM);
+    }
+
+    static int wing(double phase) {
+        return (int) Math.round(Math.max(-1, Math.min(1, phase)) * WING_STEPS);
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Packs fields of up to 32 bits into a ByteBuffer, most significant bit first
+    static final class BitWriter {
+        private ByteBuffer out;
+        private long bits;
+        private int count; // Bits in the low end of bits not yet written
+
+        void begin(ByteBuffer out) {
+            this.out = out;
+            bits = 0;
+            count = 0;
+        }
+
+        void write(long value, int width) {
+            bits = (bits << width) | (value & ((1L << width) - 1));
+            count += width;
+            while (count >= 8) {
+                count -= 8;
+                out.put((byte) (bits >>> count));
+            }
+        }
+
+        void writeBoolean(boolean value) {
+            write(value ? 1 : 0, 1);
+        }
+
+        // A zigzagged miss below MAX_MISS
+        void writeMiss(int zigzagged) {
+            if (zigzagged == 0) {
+                write(0, 1);
+                return;
+            }
+            int length = 32 - Integer.numberOfLeadingZeros(zigzagged);
+            write(1, 1);
+            write(length - 1, 4);
+            write(zigzagged, length - 1);
+        }
+
+        // Pads the last byte with zeros
+        void end() {
+            if (count > 0) {
+                out.put((byte) (bits << (8 - count)));
+                count = 0;
+            }
+        }
+    }
+
+    static final class BitReader {
+        private ByteBuffer in;
+        private long bits;
+        private int count;
+
+        void begin(ByteBuffer in) {
+            this.in = in;
+            bits = 0;
+            count = 0;
+        }
+
+        long read(int width) {
+            while (count < width) {
+                bits = (bits << 8) | (in.get() & 0xFF);
+                count += 8;
+            }
+            count -= width;
+            return (bits >>> count) & ((1L << width) - 1);
+        }
+
+        int readSigned(int width) {
+            return (int) (read(width) << (64 - width) >> (64 - width));
+        }
+
+        boolean readBoolean() {
+            return read(1) != 0;
+        }
+
+        int readMiss() {
+            if (read(1) == 0) {
+                return 0;
+            }
+            int length = (int) read(4) + 1;
+            return unzigzag((1 << (length - 1)) | (int) read(length - 1));
+        }
+    }
+}
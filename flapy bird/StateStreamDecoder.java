@@ -0,0 +1,159 @@
+import java.nio.ByteBuffer;
+import java.util.List;
+
+// Reads a StateStream into a GameSimulation that GameRenderer can draw like a local game. The
+// simulation is never ticked: every frame overwrites what is drawn, previous positions included,
+// so render interpolation works as usual, and clouds move on by themselves.
+public class StateStreamDecoder {
+    private final StateStream state = new StateStream();
+    private final StateStream.BitReader bits = new StateStream.BitReader();
+    private final GameSimulation view;
+
+    // For a stream of games in a width x height world
+    public StateStreamDecoder(int width, int height) {
+        view = new GameSimulation(width, height, true, 0);
+        view.getBird().setParticlesEnabled(false);
+    }
+
+    public GameSimulation getSimulation() {
+        return view;
+    }
+
+    // Reads the one frame between in's position and limit and updates getSimulation(), whose
+    // lock the caller holds if it is being drawn. Returns false, skipping the frame, for deltas
+    // that arrive before the first keyframe.
+    public boolean decode(ByteBuffer in) {
+        bits.begin(in);
+        if (bits.readBoolean()) {
+            readKeyframe();
+        } else if (state.started) {
+            readDelta();
+            view.updateClouds();
+        } else {
+            in.position(in.limit());
+            return false;
+        }
+        in.position(in.limit()); // Past the padding
+        show();
+        return true;
+    }
+
+    private void readKeyframe() {
+        state.started = true;
+        state.seed = bits.read(32) << 32 | bits.read(32);
+        state.tick = bits.read(32);
+        readHeader();
+        readTrack(state.ground, 32);
+        readTrack(state.birdY, StateStream.POSITION_BITS);
+        readTrack(state.birdRotation, StateStream.POSITION_BITS);
+        state.wing = bits.readSigned(8);
+
+        int pipes = (int) bits.read(5);
+        state.pipeCount = 0;
+        for (int i = 0; i < pipes; i++) {
+            readNewPipe();
+        }
+        int popups = (int) bits.read(5);
+        state.popupCount = 0;
+        for (int i = 0; i < popups; i++) {
+            readNewPopup();
+        }
+    }
+
+    private void readDelta() {
+        state.tick++;
+        if (bits.readBoolean()) {
+            readHeader();
+        } else {
+            state.levelUpTimer = Math.max(0, state.levelUpTimer - 1);
+        }
+        readMiss(state.ground);
+        readMiss(state.birdY);
+        readMiss(state.birdRotation);
+        state.wing = bits.readSigned(8);
+
+        state.removePipes((int) bits.read(2));
+        int added = (int) bits.read(2);
+        for (int i = 0; i < state.pipeCount; i++) {
+            readMiss(state.pipeX[i]);
+        }
+        for (int i = 0; i < added; i++) {
+            readNewPipe();
+        }
+
+        state.removePopups((int) bits.read(2));
+        added = (int) bits.read(2);
+        for (int i = 0; i < state.popupCount; i++) {
+            state.popupLife[i]--;
+            readMiss(state.popupY[i]);
+        }
+        for (int i = 0; i < added; i++) {
+            readNewPopup();
+        }
+    }
+
+    private void readHeader() {
+        boolean gameOver = bits.readBoolean();
+        int score = (int) bits.read(16);
+        int level = (int) bits.read(8);
+        state.setHeader(gameOver, score, level, (int) bits.read(8));
+    }
+
+    private void readNewPipe() {
+        int i = state.pipeCount++;
+        readTrack(state.pipeX[i], StateStream.POSITION_BITS);
+        state.pipeGapY[i] = bits.readSigned(StateStream.POSITION_BITS);
+        state.pipeGap[i] = bits.readSigned(StateStream.POSITION_BITS);
+    }
+
+    private void readNewPopup() {
+        int i = state.popupCount++;
+        state.popupX[i] = bits.readSigned(StateStream.POSITION_BITS);
+        readTrack(state.popupY[i], StateStream.POSITION_BITS);
+        state.popupLife[i] = (int) bits.read(6);
+    }
+
+    private void readTrack(StateStream.Track track, int width) {
+        int previous = bits.readSigned(width);
+        track.set(previous, bits.readSigned(width));
+    }
+
+    private void readMiss(StateStream.Track track) {
+        track.advance(track.predict() + bits.readMiss());
+    }
+
+    // Copies the quantized state into the simulation the renderer reads
+    private void show() {
+        double q = StateStream.POSITION_QUANTUM;
+        view.setStreamedState(state.seed, state.tick, state.gameOver, state.score, state.level, state.levelUpTimer,
+                state.ground.value / q, state.ground.previous() / q);
+        double r = StateStream.ROTATION_QUANTUM;
+        Bird bird = view.getBird();
+        bird.setStreamedState(state.birdY.value / q, state.birdY.previous() / q,
+                state.birdRotation.value / r, state.birdRotation.previous() / r,
+                (double) state.wing / StateStream.WING_STEPS * Bird.WING_RANGE * view.getScale());
+
+        PipeRing pipes = view.getPipes();
+        pipes.clear();
+        double floor = view.getHeight() - view.getGroundHeight();
+        for (int i = 0; i < state.pipeCount; i++) {
+            double gapY = state.pipeGapY[i] / q;
+            double gap = state.pipeGap[i] / q;
+            pipes.add().setStreamedState(state.pipeX[i].value / q, state.pipeX[i].previous() / q, gapY, gap,
+                    floor - gapY - gap);
+        }
+
+        // Popup objects are kept and only added as more are needed at once, like restore() does
+        List<ScorePopup> popups = view.getScorePopups();
+        while (popups.size() > state.popupCount) {
+            popups.remove(popups.size() - 1);
+        }
+        for (int i = 0; i < state.popupCount; i++) {
+            if (i == popups.size()) {
+                popups.add(new ScorePopup(0, 0, view.getScale()));
+            }
+            popups.get(i).setStreamedState(state.popupX[i] / q, state.popupY[i].value / q,
+                    state.popupY[i].previous() / q, state.popupLife[i]);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+import java.nio.ByteBuffer;
+import java.util.List;
+
+// Writes a game as a StateStream: a keyframe every keyframeTicks ticks, and whenever a delta
+// cannot describe the change (a new game, a skipped tick, an unexpected jump in a value), with
+// deltas in between. Nothing is allocated per frame.
+public class StateStreamEncoder {
+    private final StateStream state = new StateStream();
+    private final StateStream.BitWriter bits = new StateStream.BitWriter();
+    private final int keyframeTicks;
+    private int sinceKeyframe;
+    private boolean keyframeRequested;
+
+    public StateStreamEncoder(int keyframeTicks) {
+        this.keyframeTicks = keyframeTicks;
+    }
+
+    // Makes the next frame a keyframe, e.g. for a viewer that has just joined
+    public void requestKeyframe() {
+        keyframeRequested = true;
+    }
+
+    // Writes the frame for the simulation's current tick at out's position, at most
+    // StateStream.MAX_FRAME_BYTES. Returns false, writing nothing, if the game has not moved
+    // since the last frame (e.g. it is over) and no keyframe was requested.
+    public boolean encode(GameSimulation simulation, ByteBuffer out) {
+        boolean sameGame = state.started && simulation.getSeed() == state.seed;
+        if (!keyframeRequested && sameGame && simulation.getTick() == state.tick) {
+            return false;
+        }
+        int start = out.position();
+        if (!keyframeRequested && sameGame && simulation.getTick() == state.tick + 1
+                && sinceKeyframe + 1 < keyframeTicks) {
+            bits.begin(out);
+            if (writeDelta(simulation)) {
+                bits.end();
+                sinceKeyframe++;
+                return true;
+            }
+            out.position(start); // The keyframe below resets whatever the delta had updated
+        }
+        bits.begin(out);
+        writeKeyframe(simulation);
+        bits.end();
+        sinceKeyframe = 0;
+        keyframeRequested = false;
+        return true;
+    }
+
+    private void writeKeyframe(GameSimulation simulation) {
+        bits.write(1, 1);
+        state.started = true;
+        state.seed = simulation.getSeed();
+        state.tick = simulation.getTick();
+        bits.write(state.seed >>> 32, 32);
+        bits.write(state.seed, 32);
+        bits.write(state.tick, 32);
+        writeHeader(simulation);
+
+        writeTrack(state.ground, StateStream.position(simulation.getGroundOffset(0)),
+                StateStream.position(simulation.getGroundOffset(1)), 32);
+        Bird bird = simulation.getBird();
+        writeTrack(state.birdY, StateStream.position(bird.getPrevY()), StateStream.position(bird.getY()),
+                StateStream.POSITION_BITS);
+        writeTrack(state.birdRotation, StateStream.rotation(bird.getPrevRotation()),
+                StateStream.rotation(bird.getRotation()), StateStream.POSITION_BITS);
+        writeWing(bird);
+
+        PipeRing pipes = simulation.getPipes();
+        int pipeCount = Math.min(pipes.size(), StateStream.MAX_ITEMS);
+        bits.write(pipeCount, 5);
+        state.pipeCount = 0;
+        for (int i = 0; i < pipeCount; i++) {
+            writeNewPipe(pipes.get(i));
+        }
+
+        List<ScorePopup> popups = simulation.getScorePopups();
+        int popupCount = Math.min(popups.size(), StateStream.MAX_ITEMS);
+        bits.write(popupCount, 5);
+        state.popupCount = 0;
+        for (int i = 0; i < popupCount; i++) {
+            writeNewPopup(popups.get(i));
+        }
+    }
+
+    // False when the change needs a keyframe; the frame written so far is then thrown away
+    private boolean writeDelta(GameSimulation simulation) {
+        bits.write(0, 1);
+        state.tick++;
+        boolean changed = state.headerChanged(simulation.isGameOver(), simulation.getScore(),
+                simulation.getLevel(), simulation.getLevelUpTimer());
+        bits.writeBoolean(changed);
+        if (changed) {
+            writeHeader(simulation);
+        } else {
+            state.levelUpTimer = simulation.getLevelUpTimer();
+        }
+
+        Bird bird = simulation.getBird();
+        if (!writeMiss(state.ground, StateStream.position(simulation.getGroundOffset(1)))
+                || !writeMiss(state.birdY, StateStream.position(bird.getY()))
+                || !writeMiss(state.birdRotation, StateStream.rotation(bird.getRotation()))) {
+            return false;
+        }
+        writeWing(bird);
+        return writePipes(simulation.getPipes()) && writePopups(simulation.getScorePopups());
+    }
+
+    private boolean writePipes(PipeRing pipes) {
+        // Pipes never change their gap, so the first pipe's gap shows how many have left
+        int removed = 0;
+        if (pipes.size() > 0) {
+            int gapY = StateStream.position(pipes.get(0).getGapY());
+            while (removed < state.pipeCount && state.pipeGapY[removed] != gapY) {
+                removed++;
+            }
+        } else {
+            removed = state.pipeCount;
+        }
+        int kept = state.pipeCount - removed;
+        int added = pipes.size() - kept;
+        if (removed > StateStream.MAX_CHANGES || added < 0 || added > StateStream.MAX_CHANGES
+                || pipes.size() > StateStream.MAX_ITEMS) {
+            return false;
+        }
+        for (int i = 0; i < kept; i++) {
+            if (StateStream.position(pipes.get(i).getGapY()) != state.pipeGapY[removed + i]) {
+                return false;
+            }
+        }
+        bits.write(removed, 2);
+        bits.write(added, 2);
+        state.removePipes(removed);
+        for (int i = 0; i < kept; i++) {
+            if (!writeMiss(state.pipeX[i], StateStream.position(pipes.get(i).getX()))) {
+                return false;
+            }
+        }
+        for (int i = kept; i < pipes.size(); i++) {
+            writeNewPipe(pipes.get(i));
+        }
+        return true;
+    }
+
+    private boolean writePopups(List<ScorePopup> popups) {
+        // Popups stay put sideways and all live equally long, so they leave in the order they came
+        int removed = 0;
+        if (!popups.isEmpty()) {
+            int x = StateStream.position(popups.get(0).getX());
+            while (removed < state.popupCount && state.popupX[removed] != x) {
+                removed++;
+            }
+        } else {
+            removed = state.popupCount;
+        }
+        int kept = state.popupCount - removed;
+        int added = popups.size() - kept;
+        if (removed > StateStream.MAX_CHANGES || added < 0 || added > StateStream.MAX_CHANGES
+                || popups.size() > StateStream.MAX_ITEMS) {
+            return false;
+        }
+        for (int i = 0; i < kept; i++) {
+            ScorePopup popup = popups.get(i);
+            if (StateStream.position(popup.getX()) != state.popupX[removed + i]
+                    || popup.getLife() != state.popupLife[removed + i] - 1) {
+                return false;
+            }
+        }
+        bits.write(removed, 2);
+        bits.write(added, 2);
+        state.removePopups(removed);
+        for (int i = 0; i < kept; i++) {
+            state.popupLife[i]--;
+            if (!writeMiss(state.popupY[i], StateStream.position(popups.get(i).getY()))) {
+                return false;
+            }
+        }
+        for (int i = kept; i < popups.size(); i++) {
+            writeNewPopup(popups.get(i));
+        }
+        return true;
+    }
+
+    private void writeHeader(GameSimulation simulation) {
+        state.setHeader(simulation.isGameOver(), simulation.getScore(), simulation.getLevel(),
+                simulation.getLevelUpTimer());
+        bits.writeBoolean(state.gameOver);
+        bits.write(state.score, 16);
+        bits.write(state.level, 8);
+        bits.write(state.levelUpTimer, 8);
+    }
+
+    private void writeWing(Bird bird) {
+        state.wing = StateStream.wing(bird.getWingPhase());
+        bits.write(state.wing, 8);
+    }
+
+    private void writeNewPipe(Pipe pipe) {
+        int i = state.pipeCount++;
+        writeTrack(state.pipeX[i], StateStream.position(pipe.getPrevX()), StateStream.position(pipe.getX()),
+                StateStream.POSITION_BITS);
+        state.pipeGapY[i] = StateStream.position(pipe.getGapY());
+        state.pipeGap[i] = StateStream.position(pipe.getGapHeight());
+        bits.write(state.pipeGapY[i], StateStream.POSITION_BITS);
+        bits.write(state.pipeGap[i], StateStream.POSITION_BITS);
+    }
+
+    private void writeNewPopup(ScorePopup popup) {
+        int i = state.popupCount++;
+        state.popupX[i] = StateStream.position(popup.getX());
+        bits.write(state.popupX[i], StateStream.POSITION_BITS);
+        writeTrack(state.popupY[i], StateStream.position(popup.getPrevY()), StateStream.position(popup.getY()),
+                StateStream.POSITION_BITS);
+        state.popupLife[i] = popup.getLife();
+        bits.write(state.popupLife[i], 6);
+    }
+
+    private void writeTrack(StateStream.Track track, int previous, int current, int width) {
+        track.set(previous, current);
+        bits.write(previous, width);
+        bits.write(current, width);
+    }
+
+    private boolean writeMiss(StateStream.Track track, int actual) {
+        int zigzagged = StateStream.zigzag(actual - track.predict());
+        if (zigzagged < 0 || zigzagged >= StateStream.MAX_MISS) {
+            return false;
+        }
+        bits.writeMiss(zigzagged);
+        track.advance(actual);
+        return true;
+    }
+
+    // Size and speed check: java StateStreamEncoder [games]. Plays bot games, streams every tick
+    // through a decoder, checks that what the decoder shows matches the game to within the
+    // quantization, and prints bytes and encode time per tick.
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        double tolerance = 0.5 / StateStream.POSITION_QUANTUM + 1e-9;
+        StateStreamEncoder encoder = new StateStreamEncoder(StateStream.DEFAULT_KEYFRAME_TICKS);
+        StateStreamDecoder decoder = new StateStreamDecoder(GameSimulation.WORLD_WIDTH, GameSimulation.WORLD_HEIGHT);
+        GameSimulation view = decoder.getSimulation();
+        ByteBuffer frame = ByteBuffer.allocate(StateStream.MAX_FRAME_BYTES);
+        LatencyHistogram encodeTimes = new LatencyHistogram();
+        long frames = 0;
+        long keyframes = 0;
+        long bytes = 0;
+        long keyframeBytes = 0;
+        long snapshotBytes = 0;
+        long mismatches = 0;
+
+        for (int game = 0; game < games; game++) {
+            GameSimulation simulation = new GameSimulation(true, game);
+            Agent agent = new GapFollowerAgent(0.6);
+            while (!simulation.isGameOver()) {
+                if (Agent.decide(agent, simulation)) {
+                    simulation.jump();
+                }
+                simulation.tick();
+
+                frame.clear();
+                long start = System.nanoTime();
+                encoder.encode(simulation, frame);
+                encodeTimes.record(System.nanoTime() - start);
+                frame.flip();
+                boolean keyframe = (frame.get(0) & 0x80) != 0;
+                frames++;
+                bytes += frame.remaining();
+                snapshotBytes += simulation.getSnapshotSize();
+                if (keyframe) {
+                    keyframes++;
+                    keyframeBytes += frame.remaining();
+                }
+                decoder.decode(frame);
+
+                boolean same = view.getTick() == simulation.getTick() && view.getScore() == simulation.getScore()
+                        && view.isGameOver() == simulation.isGameOver()
+                        && Math.abs(view.getBird().getY() - simulation.getBird().getY()) <= tolerance
+                        && view.getPipes().size() == simulation.getPipes().size()
+                        && view.getScorePopups().size() == simulation.getScorePopups().size();
+                for (int i = 0; same && i < view.getPipes().size(); i++) {
+                    Pipe shown = view.getPipes().get(i);
+                    Pipe pipe = simulation.getPipes().get(i);
+                    same = Math.abs(shown.getX() - pipe.getX()) <= tolerance
+                            && Math.abs(shown.getPrevX() - pipe.getPrevX()) <= tolerance
+                            && Math.abs(shown.getGapY() - pipe.getGapY()) <= tolerance
+                            && Math.abs(shown.getBottomHeight() - pipe.getBottomHeight()) <= 2 * tolerance;
+                }
+                for (int i = 0; same && i < view.getScorePopups().size(); i++) {
+                    same = Math.abs(view.getScorePopups().get(i).getY() - simulation.getScorePopups().get(i).getY())
+                            <= tolerance;
+                }
+                if (!same) {
+                    mismatches++;
+                }
+            }
+        }
+
+        long deltas = frames - keyframes;
+        System.out.printf("%d games, %d ticks: %.2f bytes/tick (%.0f bytes/s at 50 ticks/s), keyframes %.1f bytes, "
+                        + "deltas %.2f bytes; full snapshots would be %.0f bytes/tick%n",
+                games, frames, (double) bytes / frames, 50.0 * bytes / frames, (double) keyframeBytes / keyframes,
+                deltas == 0 ? 0 : (double) (bytes - keyframeBytes) / deltas, (double) snapshotBytes / frames);
+        System.out.printf("encode p50 %d ns, p99 %d ns, mean %.0f ns; %d ticks shown differently%n",
+                encodeTimes.getValueAtPercentile(50), encodeTimes.getValueAtPercentile(99), encodeTimes.getMean(),
+                mismatches);
+    }
+}
@@ -0,0 +1,268 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+// The game's classes live in the unnamed package, which JMH refuses to generate benchmarks for
+// and which named packages cannot import. This adapter sits beside them and hands each measured
+// operation to the bench package as a Runnable that repeats it on prepared state.
+public final class GameWorkloads {
+    private static final int WIDTH = GameSimulation.WORLD_WIDTH;
+    private static final int HEIGHT = GameSimulation.WORLD_HEIGHT;
+    private static final double SCALE = 1.0;
+    private static final long SEED = 42;
+    private static final int JUMP_INTERVAL = 20; // Ticks between flaps, keeps a falling bird in range
+    private static final int COLLISION_STATES = 128; // A power of two
+    private static final int FIRST_COLLISION_TICK = 150; // The first pipe reaches the bird soon after
+    private static final int DISPLAY_WIDTH = 1920; // Window size for whole-frame workloads
+    private static final int DISPLAY_HEIGHT = 1440;
+
+    private GameWorkloads() {
+    }
+
+    public static Runnable create(String name) {
+        switch (name) {
+            case "birdUpdate":
+                return birdUpdate(false);
+            case "birdUpdateWithParticles":
+                return birdUpdate(true);
+            case "pipeUpdate":
+                return pipeUpdate();
+            case "collision":
+                return collision(CollisionMode.SWEPT_BOX);
+            case "collisionDiscreteBox":
+                return collision(CollisionMode.DISCRETE_BOX);
+            case "collisionCircle":
+                return collision(CollisionMode.CIRCLE);
+            case "tick":
+                return tick();
+            case "snapshotSave":
+                return snapshot(false);
+            case "snapshotRestore":
+                return snapshot(true);
+            case "streamEncode":
+                return streamEncode();
+            case "drawBird":
+                return drawBird();
+            case "drawPipe":
+                return drawPipe();
+            case "drawCloud":
+                return drawCloud();
+            case "drawGround":
+                return drawGround();
+            case "drawPopup":
+                return drawPopup();
+            case "drawHud":
+                return drawHud();
+            case "drawFrameNative":
+                return drawFrame(false);
+            case "drawFrameLogical":
+                return drawFrame(true);
+            default:
+                throw new IllegalArgumentException("Unknown workload " + name);
+        }
+    }
+
+    // Bird.update plus a flap every JUMP_INTERVAL ticks, with or without the jump particles
+    private static Runnable birdUpdate(boolean particles) {
+        Bird bird = new Bird(WIDTH / 4, HEIGHT / 2, SCALE, new GameRandom(SEED));
+        bird.setParticlesEnabled(particles);
+        int[] ticks = new int[1];
+        return () -> {
+            if (++ticks[0] % JUMP_INTERVAL == 0) {
+                bird.jump();
+            }
+            bird.update();
+        };
+    }
+
+    // Pipe.update on one pipe, moved back to the right edge once it has scrolled off screen
+    private static Runnable pipeUpdate() {
+        GameRandom random = new GameRandom(SEED);
+        Pipe pipe = new Pipe(Pipe.PIPE_WIDTH * SCALE);
+        pipe.reset(WIDTH, HEIGHT, HEIGHT * 0.25, 3.0 * SCALE, HEIGHT * 0.15, SCALE, random);
+        return () -> {
+            pipe.update();
+            if (pipe.getX() + pipe.getWidth() < 0) {
+                pipe.reset(WIDTH, HEIGHT, HEIGHT * 0.25, 3.0 * SCALE, HEIGHT * 0.15, SCALE, random);
+            }
+        };
+    }
+
+    // The per-tick bird-versus-pipes test, cycling through consecutive ticks of one game in which
+    // the bird approaches, flies through and leaves the first pipe; every mode sees the same states
+    private static Runnable collision(CollisionMode mode) {
+        GameSimulation[] states = new GameSimulation[COLLISION_STATES];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = playedSimulation(FIRST_COLLISION_TICK + i, false);
+            states[i].setCollisionMode(mode);
+        }
+        int[] next = new int[1];
+        int[] hits = new int[1];
+        return () -> {
+            if (states[next[0]++ & (COLLISION_STATES - 1)].hitsPipe()) {
+                hits[0]++;
+            }
+        };
+    }
+
+    // A whole headless tick, restarting the course whenever the bird dies
+    private static Runnable tick() {
+        GameSimulation simulation = new GameSimulation(false, SEED);
+        Agent agent = new GapFollowerAgent(0.7);
+        return () -> {
+            if (simulation.isGameOver()) {
+                simulation.reset(SEED);
+            }
+            if (Agent.decide(agent, simulation)) {
+                simulation.jump();
+            }
+            simulation.tick();
+        };
+    }
+
+    // GameSimulation.save (or restore) of a mid-game state with clouds, particles and a popup
+    // live, into one reused buffer
+    private static Runnable snapshot(boolean restore) {
+        GameSimulation simulation = new GameSimulation(true, SEED);
+        Agent agent = new GapFollowerAgent(0.7);
+        while (simulation.getScorePopups().isEmpty()) {
+            if (Agent.decide(agent, simulation)) {
+                simulation.jump();
+            }
+            simulation.tick();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(simulation.getSnapshotSize());
+        simulation.save(buffer);
+        return () -> {
+            buffer.clear();
+            if (restore) {
+                simulation.restore(buffer);
+            } else {
+                simulation.save(buffer);
+            }
+        };
+    }
+
+    // StateStreamEncoder.encode over consecutive ticks of one game as the bird passes the first
+    // pipes, so most frames are deltas with a keyframe every DEFAULT_KEYFRAME_TICKS and at the wrap
+    private static Runnable streamEncode() {
+        GameSimulation[] states = new GameSimulation[COLLISION_STATES];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = playedSimulation(FIRST_COLLISION_TICK + i, true);
+        }
+        StateStreamEncoder encoder = new StateStreamEncoder(StateStream.DEFAULT_KEYFRAME_TICKS);
+        ByteBuffer buffer = ByteBuffer.allocate(StateStream.MAX_FRAME_BYTES);
+        int[] next = new int[1];
+        return () -> {
+            buffer.clear();
+            encoder.encode(states[next[0]++ & (COLLISION_STATES - 1)], buffer);
+        };
+    }
+
+    private static Runnable drawBird() {
+        Bird bird = new Bird(WIDTH / 4, HEIGHT / 2, SCALE, new GameRandom(SEED));
+        bird.setParticlesEnabled(false);
+        int[] ticks = new int[1];
+        return paint((g2d, alpha) -> {
+            // Keep the wing and rotation moving so every sprite frame gets drawn
+            if (++ticks[0] % JUMP_INTERVAL == 0) {
+                bird.jump();
+            }
+            bird.update();
+            bird.draw(g2d, alpha, 1.0);
+        });
+    }
+
+    private static Runnable drawPipe() {
+        Pipe pipe = new Pipe(Pipe.PIPE_WIDTH * SCALE);
+        pipe.reset(WIDTH, HEIGHT, HEIGHT * 0.25, 3.0 * SCALE, HEIGHT * 0.15, SCALE, new GameRandom(SEED));
+        for (int i = 0; i < 150; i++) {
+            pipe.update(); // Mid screen
+        }
+        return paint((g2d, alpha) -> pipe.draw(g2d, alpha, 1.0));
+    }
+
+    private static Runnable drawCloud() {
+        Cloud cloud = new Cloud(WIDTH / 2, HEIGHT / 6, SCALE, new GameRandom(SEED));
+        return paint((g2d, alpha) -> cloud.draw(g2d, alpha, 1.0));
+    }
+
+    private static Runnable drawGround() {
+        Ground ground = new Ground(WIDTH, HEIGHT, (int) (HEIGHT * GameSimulation.GROUND_HEIGHT_RATIO), SCALE);
+        double[] offset = new double[1];
+        return paint((g2d, alpha) -> {
+            offset[0] += 3.0 * SCALE;
+            ground.draw(g2d, offset[0]);
+        });
+    }
+
+    // One popup replayed over its whole fade
+    private static Runnable drawPopup() {
+        ScorePopup[] popup = {new ScorePopup(WIDTH / 2, HEIGHT / 2, SCALE)};
+        return paint((g2d, alpha) -> {
+            popup[0].update();
+            if (popup[0].isDead()) {
+                popup[0] = new ScorePopup(WIDTH / 2, HEIGHT / 2, SCALE);
+            }
+            popup[0].draw(g2d, alpha, 1.0);
+        });
+    }
+
+    // Score and level text with the score going up every 50 frames, like a game in progress
+    private static Runnable drawHud() {
+        Hud hud = new Hud(SCALE);
+        int[] frames = new int[1];
+        return paint((g2d, alpha) -> {
+            frames[0]++;
+            hud.drawScore(g2d, frames[0] / 50, 1 + frames[0] / 250);
+        });
+    }
+
+    // A whole frame mid-game for a DISPLAY_WIDTH x DISPLAY_HEIGHT window, either drawn at that size
+    // or drawn at WIDTH x HEIGHT and stretched to it
+    private static Runnable drawFrame(boolean logical) {
+        GameSimulation simulation = playedSimulation(FIRST_COLLISION_TICK, false);
+        BufferedImage window = new BufferedImage(DISPLAY_WIDTH, DISPLAY_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = window.createGraphics();
+        if (!logical) {
+            GameRenderer renderer = new GameRenderer(simulation, DISPLAY_WIDTH, DISPLAY_HEIGHT, FrameProfiler.DISABLED);
+            return () -> renderer.render(g2d, simulation, 0.5);
+        }
+        GameRenderer renderer = new GameRenderer(simulation, WIDTH, HEIGHT, FrameProfiler.DISABLED);
+        LogicalFramebuffer framebuffer = new LogicalFramebuffer(WIDTH, HEIGHT, null);
+        return () -> {
+            Graphics2D frame = framebuffer.createGraphics();
+            renderer.render(frame, simulation, 0.5);
+            frame.dispose();
+            framebuffer.drawScaled(g2d, DISPLAY_WIDTH, DISPLAY_HEIGHT);
+        };
+    }
+
+    // The game on SEED with the baseline agent after the given number of ticks
+    private static GameSimulation playedSimulation(int ticks, boolean effects) {
+        GameSimulation simulation = new GameSimulation(effects, SEED);
+        Agent agent = new GapFollowerAgent(0.7);
+        while (simulation.getTick() < ticks && !simulation.isGameOver()) {
+            if (Agent.decide(agent, simulation)) {
+                simulation.jump();
+            }
+            simulation.tick();
+        }
+        return simulation;
+    }
+
+    // Draws into an offscreen frame with the hints GameRenderer uses. The sky is
+    // filled once up front so the measurement is the draw call alone.
+    private static Runnable paint(Painter painter) {
+        BufferedImage frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = frame.createGraphics();
+        g2d.setColor(new Color(135, 206, 235));
+        g2d.fillRect(0, 0, WIDTH, HEIGHT);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        return () -> painter.paint(g2d, 0.5);
+    }
+
+    private interface Painter {
+        void paint(Graphics2D g2d, double alpha);
+    }
+}
@@ -0,0 +1,32 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Each draw method rendering into an 800x600 offscreen BufferedImage, plus whole frames for a
+// 1920x1440 window drawn natively or through the logical framebuffer
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class PaintBenchmark {
+    @Param({"drawBird", "drawPipe", "drawCloud", "drawGround", "drawPopup", "drawHud",
+            "drawFrameNative", "drawFrameLogical"})
+    public String workload;
+
+    private Runnable operation;
+
+    @Setup
+    public void setup() {
+        operation = Workloads.get(workload);
+        operation.run(); // Rasterize cached sprites outside the measurement
+    }
+
+    @Benchmark
+    public void draw() {
+        operation.run();
+    }
+}
@@ -0,0 +1,31 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Per-tick physics: one call of the named update per operation
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UpdateBenchmark {
+    @Param({"birdUpdate", "birdUpdateWithParticles", "pipeUpdate", "collision", "collisionDiscreteBox",
+            "collisionCircle", "tick",
+            "snapshotSave", "snapshotRestore", "streamEncode"})
+    public String workload;
+
+    private Runnable operation;
+
+    @Setup
+    public void setup() {
+        operation = Workloads.get(workload);
+    }
+
+    @Benchmark
+    public void update() {
+        operation.run();
+    }
+}
@@ -0,0 +1,15 @@
+package bench;
+
+// Looks up a game workload through the default-package GameWorkloads adapter
+final class Workloads {
+    private Workloads() {
+    }
+
+    static Runnable get(String name) {
+        try {
+            return (Runnable) Class.forName("GameWorkloads").getMethod("create", String.class).invoke(null, name);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create workload " + name, e);
+        }
+    }
+}